@@ -0,0 +1,189 @@
+import java.util.*;
+
+/**
+ * Generation strategy that places words by depth-first search instead of random retries.
+ * Words are placed longest first. For each word, every placement that fits the grid and does not overwrite
+ * a placed word is a candidate, and candidates sharing more letters with placed words are tried first
+ * (ties in random order, drawn from the builder's WordSearch3D so the same seed always gives the same puzzle). After each placement,
+ * every word still to be placed must have at least one candidate left, otherwise the search backtracks.
+ * Because the search is exhaustive, running out of candidates proves the words cannot all be placed
+ * without overwriting one another, which makes it suited to small or densely packed puzzles.
+ */
+public class BacktrackingGenerator implements PuzzleGenerator {
+	static final long DEFAULT_MAX_STEPS = 1000000;
+
+	private final long maxSteps;
+
+	public BacktrackingGenerator() {
+		this(DEFAULT_MAX_STEPS);
+	}
+
+	public BacktrackingGenerator(long maxSteps) {
+		this.maxSteps = maxSteps; //most placements to try before giving up
+	}
+
+	public long getMaxSteps() { return this.maxSteps; }
+
+	@Override
+	public boolean generate(PuzzleBuilder builder, String[] words) {
+		return Boolean.TRUE.equals(solve(builder, words));
+	}
+
+	/**
+	 * Searches for placements of all the specified words in a puzzle under construction
+	 * @param builder puzzle under construction
+	 * @param words the (nonempty) words to place
+	 * @return TRUE if every word was placed, FALSE if they provably cannot all be placed,
+	 * or null if the search gave up after maxSteps placements
+	 */
+	public Boolean solve(PuzzleBuilder builder, String[] words) {
+		final String[] order = words.clone();
+		Arrays.sort(order, new Comparator<String>() { //longest first; equal words end up next to each other
+			@Override
+			public int compare(String a, String b) {
+				return (a.length() != b.length()) ? b.length()-a.length() : a.compareTo(b);
+			}
+		});
+		final Search search = new Search(builder, order);
+		final int mark = builder.mark();
+		if (search.place(0)) return true;
+		builder.rollback(mark);
+		return search.steps > maxSteps ? null : false;
+	}
+
+	/**
+	 * State of one depth-first search
+	 */
+	private class Search {
+		private final PuzzleBuilder builder;
+		private final CharGrid grid;
+		private final String[] words;
+		private final SplittableRandom rng;
+		private long steps;
+
+		Search(PuzzleBuilder builder, String[] words) {
+			this.builder = builder;
+			this.grid = builder.getGrid();
+			this.rng = builder.getWordSearch().getRandom(); //for ordering equally good candidates
+			this.words = words;
+		}
+
+		/**
+		 * Places the words from the specified depth on, backtracking over each word's candidates
+		 * @param depth index into words of the next word to place
+		 * @return boolean indicating if the remaining words were all placed (on failure the builder is as it was)
+		 */
+		boolean place(int depth) {
+			if (depth == words.length) return true;
+			final String word = words[depth];
+			final long[] candidates = candidates(word);
+			for (long hit : candidates) {
+				if (++steps > maxSteps) return false; //gave up; solve tells this apart from a dead end
+				final int mark = builder.mark();
+				builder.place(word, (int)(hit/CharGrid.DIRECTIONS.length), (int)(hit%CharGrid.DIRECTIONS.length));
+				if (stillPlaceable(depth+1) && place(depth+1)) return true;
+				builder.rollback(mark);
+				if (steps > maxSteps) return false;
+			}
+			return false; //dead end
+		}
+
+		/**
+		 * Checks that every word from the specified depth on still has somewhere to go
+		 * @param depth index into words of the first word to check
+		 * @return boolean indicating if none of the remaining words has run out of candidates
+		 */
+		private boolean stillPlaceable(int depth) {
+			for (int i = depth; i < words.length; i++) {
+				if (!hasCandidate(words[i])) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Lists the placements of a word that fit the grid without overwriting a placed word, best first
+		 * @param word word to place
+		 * @return candidate placements, encoded by CharGrid.hit, most shared letters first
+		 */
+		private long[] candidates(String word) {
+			final int len = word.length();
+			long[] hits = new long[64];
+			long[] keys = new long[64];
+			int count = 0;
+
+			for (int d = firstDirection(word); d < lastDirection(word); d++) {
+				final int[] box = grid.startBox(d, len);
+				for (int r = box[0]; r < box[1]; r++) {
+					for (int c = box[2]; c < box[3]; c++) {
+						for (int a = box[4]; a < box[5]; a++) {
+							final int offset = grid.offset(r, c, a);
+							final int shared = builder.shared(word, offset, d);
+							if (shared < 0) continue;
+							if (count == hits.length) {
+								hits = Arrays.copyOf(hits, 2*count);
+								keys = Arrays.copyOf(keys, 2*count);
+							}
+							//sort key: fewest unshared letters, then a random tie-break, then the candidate's index
+							keys[count] = ((long)Math.min(len-shared, 0x7ff) << 52) | ((long)rng.nextInt(1 << 20) << 32) | count;
+							hits[count++] = CharGrid.hit(offset, d);
+						}
+					}
+				}
+			}
+
+			keys = Arrays.copyOf(keys, count);
+			Arrays.sort(keys);
+			final long[] sorted = new long[count];
+			for (int i = 0; i < count; i++) sorted[i] = hits[(int)keys[i]];
+			return sorted;
+		}
+
+		/**
+		 * Checks if a word has at least one candidate placement
+		 * @param word word to place
+		 * @return boolean indicating if the word fits somewhere without overwriting a placed word
+		 */
+		private boolean hasCandidate(String word) {
+			for (int d = firstDirection(word); d < lastDirection(word); d++) {
+				final int[] box = grid.startBox(d, word.length());
+				for (int r = box[0]; r < box[1]; r++) {
+					for (int c = box[2]; c < box[3]; c++) {
+						for (int a = box[4]; a < box[5]; a++) {
+							if (builder.shared(word, grid.offset(r, c, a), d) >= 0) return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @param word word to place
+		 * @return first index into CharGrid.DIRECTIONS worth trying; a palindrome reads the same both ways,
+		 * so only one direction of each opposite pair (the second half of DIRECTIONS) is needed
+		 */
+		private int firstDirection(String word) {
+			return (word.length() > 1 && isPalindrome(word)) ? CharGrid.DIRECTIONS.length/2 : 0;
+		}
+
+		/**
+		 * @param word word to place
+		 * @return index into CharGrid.DIRECTIONS after the last one worth trying; a single letter only needs one
+		 */
+		private int lastDirection(String word) {
+			return (word.length() == 1) ? 1 : CharGrid.DIRECTIONS.length;
+		}
+	}
+
+	/**
+	 * Checks if a word reads the same backwards
+	 * @param word word to check
+	 * @return boolean indicating if the word is a palindrome
+	 */
+	private static boolean isPalindrome(String word) {
+		for (int i = 0, j = word.length()-1; i < j; i++, j--) {
+			if (word.charAt(i) != word.charAt(j)) return false;
+		}
+		return true;
+	}
+}
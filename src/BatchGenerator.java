@@ -0,0 +1,200 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * Generates many puzzles in one run as a three-stage pipeline: a reader streams jobs from a file,
+ * a pool of workers makes each puzzle and searches it for its words, and a writer exports each result
+ * with writeGrid and writeLocations. The stages are connected by bounded queues, so a fast reader
+ * waits for the workers and the workers wait for the writer, and memory stays flat however many jobs there are.
+ * Each job line is "rows columns aisles word word ...", blank lines and lines starting with # are skipped.
+ * Job n is generated with seed (seed + n), so any puzzle of a batch can be reproduced on its own.
+ * Usage: java BatchGenerator jobs.txt outputDirectory [workers] [seed]
+ */
+public class BatchGenerator {
+	static final int QUEUE_CAPACITY = 64; //jobs or results waiting between two stages
+	private static final Job END = new Job(-1, 0, 0, 0, null); //poison pill: no more jobs
+	private static final Result DONE = new Result(null, null, null); //poison pill: a worker has finished
+
+	private final int workers;
+	private final long seed;
+	private final BlockingQueue<Job> jobs = new ArrayBlockingQueue<Job>(QUEUE_CAPACITY);
+	private final BlockingQueue<Result> results = new ArrayBlockingQueue<Result>(QUEUE_CAPACITY);
+
+	public BatchGenerator(int workers, long seed) {
+		this.workers = Math.max(workers, 1); //number of generator threads
+		this.seed = seed; //base seed; job n uses seed+n
+	}
+
+	/**
+	 * Runs every job read from the reader, writing each puzzle to the output directory
+	 * as puzzle-n-grid.txt and puzzle-n-locations.txt
+	 * @param in source of job lines
+	 * @param directory directory to write the puzzles to
+	 * @return {puzzles written, jobs that failed}
+	 */
+	public long[] run(final BufferedReader in, final File directory) throws IOException, InterruptedException {
+		final Thread[] pool = new Thread[workers];
+		for (int i = 0; i < workers; i++) {
+			pool[i] = new Thread(new Runnable() {
+				@Override
+				public void run() { work(); }
+			}, "generator-"+i);
+			pool[i].start();
+		}
+		final long[] counts = new long[2];
+		final Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() { write(directory, counts); }
+		}, "writer");
+		writer.start();
+
+		try {
+			read(in);
+		}
+		finally {
+			for (int i = 0; i < workers; i++) jobs.put(END); //one pill per worker, even if reading failed
+			writer.join();
+		}
+		return counts;
+	}
+
+	/**
+	 * Reader stage: parses job lines onto the job queue, blocking while it is full
+	 * @param in source of job lines
+	 */
+	private void read(BufferedReader in) throws IOException, InterruptedException {
+		int lineNumber = 0, index = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			final String[] fields = line.split("\\s+");
+			try {
+				if (fields.length < 3) throw new NumberFormatException("expected rows columns aisles");
+				jobs.put(new Job(index++, Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+					Arrays.copyOfRange(fields, 3, fields.length)));
+			}
+			catch (NumberFormatException nfe) {
+				System.err.println("line "+lineNumber+": skipped, "+nfe.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Worker stage: makes and solves puzzles until the poison pill arrives
+	 */
+	private void work() {
+		try {
+			try {
+				for (Job job = jobs.take(); job != END; job = jobs.take()) {
+					final WordSearch3D wordSearch = new WordSearch3D(seed+job.index);
+					CharGrid grid = null;
+					int[][][] locations = null;
+					try {
+						grid = wordSearch.makeGrid(job.words, job.rows, job.columns, job.aisles);
+						if (grid != null) locations = wordSearch.searchForAll(grid, job.words);
+					}
+					catch (RuntimeException re) { //counts as a failed job rather than stopping the batch
+						System.err.println("job "+job.index+": "+re);
+						grid = null;
+					}
+					results.put(new Result(job, grid, locations));
+				}
+			}
+			finally {
+				results.put(DONE); //the writer waits for one per worker, so send it however this worker stops
+			}
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writer stage: exports results until every worker has finished.
+	 * A result that cannot be written counts as failed, and the writer carries on with the next one.
+	 * @param directory directory to write the puzzles to
+	 * @param counts {puzzles written, jobs that failed}, filled in as results arrive
+	 */
+	private void write(File directory, long[] counts) {
+		try {
+			for (int finished = 0; finished < workers; ) {
+				final Result result = results.take();
+				if (result == DONE) finished++;
+				else if (result.grid == null) {
+					counts[1]++;
+					System.err.println("job "+result.job.index+": no puzzle could be made");
+				}
+				else {
+					final String prefix = new File(directory, "puzzle-"+result.job.index).getPath();
+					try {
+						WordSearch3D.writeGrid(result.grid, prefix+"-grid.txt");
+						WordSearch3D.writeLocations(result.locations, prefix+"-locations.txt");
+						counts[0]++;
+					}
+					catch (IOException | RuntimeException e) {
+						counts[1]++;
+						System.err.println("job "+result.job.index+": could not be written, "+e);
+						new File(prefix+"-grid.txt").delete(); //leave no half-written puzzle behind
+						new File(prefix+"-locations.txt").delete();
+					}
+				}
+			}
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A puzzle to make: its size and words, and its position in the batch
+	 */
+	private static class Job {
+		private final int index, rows, columns, aisles;
+		private final String[] words;
+
+		Job(int index, int rows, int columns, int aisles, String[] words) {
+			this.index = index;
+			this.rows = rows;
+			this.columns = columns;
+			this.aisles = aisles;
+			this.words = words;
+		}
+	}
+
+	/**
+	 * A made puzzle (or a null grid if none could be made) on its way to the writer
+	 */
+	private static class Result {
+		private final Job job;
+		private final CharGrid grid;
+		private final int[][][] locations;
+
+		Result(Job job, CharGrid grid, int[][][] locations) {
+			this.job = job;
+			this.grid = grid;
+			this.locations = locations;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.err.println("usage: java BatchGenerator jobs.txt outputDirectory [workers] [seed]");
+			return;
+		}
+		final File directory = new File(args[1]);
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("cannot create "+directory);
+		final int workers = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final long seed = (args.length > 3) ? Long.parseLong(args[3]) : System.nanoTime();
+
+		final long start = System.nanoTime();
+		final long[] counts;
+		try (final BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+			counts = new BatchGenerator(workers, seed).run(in, directory);
+		}
+		final double seconds = (System.nanoTime()-start)/1e9;
+		System.out.printf("%d puzzles written, %d failed, in %.2f s (%.1f puzzles/s, seed %d)%n",
+			counts[0], counts[1], seconds, counts[0]/seconds, seed);
+	}
+}
@@ -0,0 +1,120 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Reads and writes grids in a compact binary format, so that large grids load without parsing.
+ * The file is a header followed by one byte per cell, in CharGrid order (row by row, then column, then aisle):
+ * the magic number "WS3D", a format version byte, the number of rows, columns and aisles (4-byte integers),
+ * the alphabet size n (2 bytes) and the n characters of the alphabet (2 bytes each); each cell byte indexes
+ * the alphabet. All numbers are big-endian. A grid can use at most 256 distinct characters.
+ */
+public class BinaryGrid {
+	static final int MAGIC = 0x57533344; //"WS3D"
+	static final byte VERSION = 1;
+	static final int MAX_ALPHABET = 256;
+	private static final int CHUNK = 1 << 16; //cells encoded or decoded at a time
+
+	private BinaryGrid() {
+	}
+
+	/**
+	 * Checks if a file starts with the binary grid magic number
+	 * @param filename name of the file
+	 * @return boolean indicating if the file looks like a binary grid
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(String filename) throws IOException {
+		try (final DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+			return in.readInt() == MAGIC;
+		}
+		catch (EOFException eofe) {
+			return false; //shorter than the magic number
+		}
+	}
+
+	/**
+	 * Writes a grid to a file in the binary format
+	 * @param grid grid to write
+	 * @param filename name of the file to write
+	 * @throws IOException if the file cannot be written
+	 * @throws IllegalArgumentException if the grid uses more than MAX_ALPHABET distinct characters
+	 */
+	public static void write(CharGrid grid, String filename) throws IOException {
+		final char[] cells = grid.cells();
+		final int[] codes = new int[Character.MAX_VALUE+1]; //character -> its alphabet index plus one (0 if not seen yet)
+		final char[] alphabet = new char[MAX_ALPHABET];
+		int size = 0;
+		for (char ch : cells) {
+			if (codes[ch] != 0) continue;
+			if (size == MAX_ALPHABET) throw new IllegalArgumentException("grid uses more than "+MAX_ALPHABET+" distinct characters");
+			alphabet[size] = ch;
+			codes[ch] = ++size;
+		}
+
+		try (final FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			final ByteBuffer header = ByteBuffer.allocate(4+1+12+2+2*size);
+			header.putInt(MAGIC).put(VERSION).putInt(grid.getRows()).putInt(grid.getColumns()).putInt(grid.getAisles());
+			header.putShort((short)size);
+			for (int i = 0; i < size; i++) header.putChar(alphabet[i]);
+			header.flip();
+			writeFully(channel, header);
+
+			final ByteBuffer buffer = ByteBuffer.allocate(Math.min(CHUNK, Math.max(cells.length, 1)));
+			for (int from = 0; from < cells.length; from += buffer.capacity()) {
+				final int to = Math.min(from+buffer.capacity(), cells.length);
+				buffer.clear();
+				for (int i = from; i < to; i++) buffer.put((byte)(codes[cells[i]]-1));
+				buffer.flip();
+				writeFully(channel, buffer);
+			}
+		}
+	}
+
+	/**
+	 * Loads a grid from a file in the binary format by memory-mapping it
+	 * @param filename name of the file to read
+	 * @return grid held in the file
+	 * @throws IOException if the file cannot be read or is not a valid binary grid
+	 */
+	public static CharGrid read(String filename) throws IOException {
+		try (final FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				if (map.getInt() != MAGIC) throw new IOException(filename+": not a binary grid file");
+				final byte version = map.get();
+				if (version != VERSION) throw new IOException(filename+": unsupported binary grid version "+version);
+				final int rows = map.getInt(), columns = map.getInt(), aisles = map.getInt();
+				final int size = map.getShort() & 0xffff;
+				if (rows < 0 || columns < 0 || aisles < 0 || size > MAX_ALPHABET) throw new IOException(filename+": corrupt header");
+				final long cellCount = (long)rows*columns*aisles;
+				final char[] alphabet = new char[MAX_ALPHABET];
+				for (int i = 0; i < size; i++) alphabet[i] = map.getChar();
+				if (map.remaining() != cellCount) throw new IOException(filename+": expected "+cellCount+" cells but found "+map.remaining());
+
+				final CharGrid grid = new CharGrid(rows, columns, aisles);
+				final char[] cells = grid.cells();
+				final byte[] chunk = new byte[(int)Math.min(CHUNK, Math.max(cellCount, 1))];
+				for (int from = 0; from < cells.length; from += chunk.length) {
+					final int count = Math.min(chunk.length, cells.length-from);
+					map.get(chunk, 0, count);
+					for (int i = 0; i < count; i++) {
+						final int code = chunk[i] & 0xff;
+						if (code >= size) throw new IOException(filename+": cell "+(from+i)+" is outside the alphabet");
+						cells[from+i] = alphabet[code];
+					}
+				}
+				return grid;
+			}
+			catch (BufferUnderflowException bue) {
+				throw new IOException(filename+": truncated binary grid");
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+}
@@ -0,0 +1,177 @@
+import java.util.*;
+
+/**
+ * Search engine that keeps one bitset per character over the flattened grid and finds a word in a
+ * direction by AND-ing the bitsets of its letters, each shifted back by the letter's distance along the line.
+ * Each long compares 64 starting cells at once, and a mask of the cells the word can start from
+ * without leaving the grid stops lines from wrapping between rows, columns or aisles.
+ * The bitsets for the most recently searched grid are kept until the grid or its contents change, and the candidate
+ * bitset is one scratch array reused for every direction and word, so an instance should not be shared between threads.
+ */
+public class BitSearch implements SearchEngine {
+	private CharGrid grid;
+	private int version;
+	private long[][] letterBits; //character -> bitset of the cells holding it (null if none)
+	private long[] candidates; //scratch bitset of candidate start cells, sized for the prepared grid
+
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		if (grid == null) return null;
+		else if (word == null || word.isEmpty()) return null;
+		prepare(grid);
+		final long hit = findFirst(grid, word);
+		return (hit == CharGrid.NO_HIT) ? null : grid.positions(hit, word.length());
+	}
+
+	@Override
+	public int[][][] searchForAll(CharGrid grid, String[] words) {
+		final int[][][] locations = new int[words.length][][];
+		for (int i = 0; i < words.length; i++) {
+			locations[i] = searchGrid(grid, words[i]);
+		}
+		return locations;
+	}
+
+	/**
+	 * Finds the first occurrence of a word using the prepared bitsets
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the (nonempty) word to search for
+	 * @return the word's match encoded by CharGrid.hit (or CharGrid.NO_HIT if not found)
+	 */
+	private long findFirst(CharGrid grid, String word) {
+		final int len = word.length();
+		final long[][] bits = new long[len][];
+		for (int i = 0; i < len; i++) {
+			final char ch = word.charAt(i);
+			bits[i] = (ch < letterBits.length) ? letterBits[ch] : null;
+			if (bits[i] == null) return CharGrid.NO_HIT; //some letter is nowhere in the grid
+		}
+		if (len == 1) {
+			final int first = firstSetBit(bits[0], 0, bits[0].length);
+			return (first < 0) ? CharGrid.NO_HIT : CharGrid.hit(first, 0);
+		}
+
+		long best = CharGrid.NO_HIT;
+		for (int d = 0; d < CharGrid.DIRECTIONS.length; d++) {
+			final int[] box = grid.startBox(d, len);
+			if (box[0] == box[1] || box[2] == box[3] || box[4] == box[5]) continue; //word cannot fit this way
+			final int[] vec = CharGrid.DIRECTIONS[d];
+			final int stride = grid.stride(vec[0], vec[1], vec[2]);
+			final int fromWord = grid.offset(box[0], box[2], box[4]) >>> 6;
+			final int toWord = ((grid.offset(box[1]-1, box[3]-1, box[5]-1)) >>> 6)+1;
+
+			startMask(grid, box, candidates, fromWord, toWord);
+			for (int w = fromWord; w < toWord; w++) candidates[w] &= bits[0][w];
+			for (int i = 1; i < len; i++) {
+				if (!andShifted(candidates, bits[i], i*stride, fromWord, toWord)) break; //no candidates left
+			}
+			final int first = firstSetBit(candidates, fromWord, toWord);
+			if (first >= 0) best = Math.min(best, CharGrid.hit(first, d));
+		}
+		return best;
+	}
+
+	/**
+	 * Fills in the bitset of cells inside a start box. Only the longs the box touches are written,
+	 * and they are all the later steps of a search read.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param box start box as returned by CharGrid.startBox
+	 * @param mask bitset over the whole grid to fill in (only longs fromWord to toWord are cleared and set)
+	 * @param fromWord first long the box touches
+	 * @param toWord long after the last one the box touches
+	 */
+	private static void startMask(CharGrid grid, int[] box, long[] mask, int fromWord, int toWord) {
+		Arrays.fill(mask, fromWord, toWord, 0L);
+		for (int r = box[0]; r < box[1]; r++) {
+			for (int c = box[2]; c < box[3]; c++) {
+				setRange(mask, grid.offset(r, c, box[4]), grid.offset(r, c, box[5]-1)+1);
+			}
+		}
+	}
+
+	/**
+	 * Sets a range of bits
+	 * @param bits bitset to modify
+	 * @param from first bit to set
+	 * @param to bit after the last one to set
+	 */
+	private static void setRange(long[] bits, int from, int to) {
+		final int first = from >>> 6, last = (to-1) >>> 6;
+		final long firstMask = -1L << from, lastMask = -1L >>> -to; //shift distances are taken mod 64
+		if (first == last) bits[first] |= firstMask & lastMask;
+		else {
+			bits[first] |= firstMask;
+			for (int w = first+1; w < last; w++) bits[w] = -1L;
+			bits[last] |= lastMask;
+		}
+	}
+
+	/**
+	 * Keeps only the candidate starts whose cell at the specified distance along the line is set in the specified bitset
+	 * @param candidates candidate start cells (modified in place)
+	 * @param bits bitset of the cells holding the letter at this distance
+	 * @param shift offset distance from the start cell to the letter's cell
+	 * @param fromWord first long holding candidates
+	 * @param toWord long after the last one holding candidates
+	 * @return whether any candidates remain
+	 */
+	private static boolean andShifted(long[] candidates, long[] bits, int shift, int fromWord, int toWord) {
+		boolean any = false;
+		for (int w = fromWord; w < toWord; w++) {
+			if (candidates[w] == 0) continue;
+			candidates[w] &= bitsAt(bits, ((long)w << 6)+shift);
+			any |= candidates[w] != 0;
+		}
+		return any;
+	}
+
+	/**
+	 * Reads 64 consecutive bits of a bitset, treating bits outside it as clear
+	 * @param bits bitset to read
+	 * @param start index of the first bit to read (may be negative)
+	 * @return the bits, lowest index in the lowest position
+	 */
+	private static long bitsAt(long[] bits, long start) {
+		final int word = (int)Math.floorDiv(start, 64L);
+		final int bit = (int)Math.floorMod(start, 64L);
+		final long low = (word >= 0 && word < bits.length) ? bits[word] >>> bit : 0;
+		if (bit == 0) return low;
+		final long high = (word+1 >= 0 && word+1 < bits.length) ? bits[word+1] << (64-bit) : 0;
+		return low | high;
+	}
+
+	/**
+	 * Finds the lowest set bit in a range of longs
+	 * @param bits bitset to search
+	 * @param fromWord first long to look at
+	 * @param toWord long after the last one to look at
+	 * @return index of the lowest set bit (or -1 if none)
+	 */
+	private static int firstSetBit(long[] bits, int fromWord, int toWord) {
+		for (int w = fromWord; w < toWord; w++) {
+			if (bits[w] != 0) return (w << 6)+Long.numberOfTrailingZeros(bits[w]);
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds the per-character bitsets of the specified grid unless they are already built for its current contents
+	 * @param grid the grid of characters comprising the word search puzzle
+	 */
+	private void prepare(CharGrid grid) {
+		if (grid == this.grid && grid.getVersion() == this.version) return;
+		final char[] cells = grid.cells();
+		int maxChar = 0;
+		for (char ch : cells) if (ch > maxChar) maxChar = ch;
+
+		final int words = (cells.length+63) >>> 6;
+		if (candidates == null || candidates.length != words) candidates = new long[words];
+		letterBits = new long[maxChar+1][];
+		for (int i = 0; i < cells.length; i++) {
+			if (letterBits[cells[i]] == null) letterBits[cells[i]] = new long[words];
+			letterBits[cells[i]][i >>> 6] |= 1L << i;
+		}
+		this.grid = grid;
+		this.version = grid.getVersion();
+	}
+}
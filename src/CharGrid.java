@@ -0,0 +1,348 @@
+/**
+ * A 3D grid of characters backed by a single contiguous array.
+ * Cells are stored row by row, then column by column, then aisle by aisle,
+ * so the cell at (row, column, aisle) lives at offset row*rowStride + column*columnStride + aisle.
+ */
+public class CharGrid {
+	/**
+	 * The 26 unit directions a word can run in (every vector with components in {-1,0,1} except the zero vector),
+	 * ordered by x, then y, then z, each from -1 to 1
+	 */
+	static final int[][] DIRECTIONS = buildDirections();
+
+	/**
+	 * Marker for "no match" where a match is encoded as a single long (see hit)
+	 */
+	static final long NO_HIT = Long.MAX_VALUE;
+
+	/**
+	 * For each axis, the bitmask of directions (bit d for DIRECTIONS[d]) moving backwards, not at all, and forwards along it
+	 */
+	private static final int[][] AXIS_MASKS = buildAxisMasks();
+
+	private final int rows, columns, aisles;
+	private final int rowStride, columnStride; //aisle stride is always 1
+	private final int[] strides; //offset step along each of DIRECTIONS
+	private final char[] cells;
+	private int version; //bumped on every write so cached results can tell the grid has changed
+	private volatile Fingerprint fingerprint; //published whole so threads sharing the grid never see a hash paired with the wrong version
+
+	public CharGrid(int rows, int columns, int aisles) {
+		this(rows, columns, aisles, new char[cellCount(rows, columns, aisles)]);
+	}
+
+	/**
+	 * Computes the number of cells of a grid of the specified size
+	 * @param rows size along first dimension
+	 * @param columns size along second dimension
+	 * @param aisles size along third dimension
+	 * @return number of cells
+	 * @throws IllegalArgumentException if a size is negative or the grid has more cells than an array can hold
+	 */
+	private static int cellCount(int rows, int columns, int aisles) {
+		if (rows < 0 || columns < 0 || aisles < 0) throw new IllegalArgumentException("negative grid size "+rows+"x"+columns+"x"+aisles);
+		try {
+			return Math.multiplyExact(Math.multiplyExact(rows, columns), aisles);
+		}
+		catch (ArithmeticException ae) {
+			throw new IllegalArgumentException("grid of "+rows+"x"+columns+"x"+aisles+" cells is too large");
+		}
+	}
+
+	private CharGrid(int rows, int columns, int aisles, char[] cells) {
+		this.rows = rows; //size along first dimension
+		this.columns = columns; //size along second dimension
+		this.aisles = aisles; //size along third dimension
+		this.columnStride = aisles;
+		this.rowStride = columns*aisles;
+		this.cells = cells;
+		this.strides = new int[DIRECTIONS.length];
+		for (int d = 0; d < DIRECTIONS.length; d++) strides[d] = stride(DIRECTIONS[d][0], DIRECTIONS[d][1], DIRECTIONS[d][2]);
+	}
+
+	/**
+	 * Builds a flat grid holding the same characters as a (rectangular) 3D char array
+	 * @param grid 3D char array to be copied
+	 * @return flat grid with the same dimensions and contents (or null if grid is null)
+	 */
+	public static CharGrid fromArray(char[][][] grid) {
+		if (grid == null) return null;
+		final int rows = grid.length;
+		final int columns = (rows == 0) ? 0 : grid[0].length;
+		final int aisles = (columns == 0) ? 0 : grid[0][0].length;
+
+		final CharGrid flat = new CharGrid(rows, columns, aisles);
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				System.arraycopy(grid[r][c], 0, flat.cells, flat.offset(r, c, 0), aisles);
+			}
+		}
+		return flat;
+	}
+
+	/**
+	 * Produces a 3D char array holding the same characters as this grid
+	 * @return 3D char array with the same dimensions and contents
+	 */
+	public char[][][] toArray() {
+		final char[][][] grid = new char[rows][columns][aisles];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				System.arraycopy(cells, offset(r, c, 0), grid[r][c], 0, aisles);
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Produces a duplicate grid in order to avoid aliasing problems
+	 * @return duplicate grid
+	 */
+	public CharGrid copy() {
+		return new CharGrid(rows, columns, aisles, cells.clone());
+	}
+
+	public int getRows() { return this.rows; }
+	public int getColumns() { return this.columns; }
+	public int getAisles() { return this.aisles; }
+	public int getRowStride() { return this.rowStride; }
+	public int getColumnStride() { return this.columnStride; }
+	public int size() { return this.cells.length; }
+	public boolean isEmpty() { return this.cells.length == 0; }
+	public int getVersion() { return this.version; }
+
+	public int stride(int dx, int dy, int dz) { return dx*rowStride + dy*columnStride + dz; }
+	public int stride(int dir) { return strides[dir]; }
+	public int offset(int row, int column, int aisle) { return row*rowStride + column*columnStride + aisle; }
+	public int rowOf(int offset) { return offset/rowStride; }
+	public int columnOf(int offset) { return (offset%rowStride)/columnStride; }
+	public int aisleOf(int offset) { return offset%columnStride; }
+
+	public char get(int offset) { return cells[offset]; }
+	public char get(int row, int column, int aisle) { return cells[offset(row, column, aisle)]; }
+	public void set(int offset, char ch) { cells[offset] = ch; version++; }
+	public void set(int row, int column, int aisle, char ch) { set(offset(row, column, aisle), ch); }
+
+	/**
+	 * Computes a 64-bit hash of the grid's dimensions and contents, reusing it until the grid is next written to
+	 * @return content hash of the grid
+	 */
+	public long fingerprint() {
+		final int current = version;
+		Fingerprint cached = fingerprint;
+		if (cached == null || cached.version != current) {
+			long hash = 0xcbf29ce484222325L; //FNV-1a offset basis
+			hash = (hash ^ rows)*0x100000001b3L;
+			hash = (hash ^ columns)*0x100000001b3L;
+			hash = (hash ^ aisles)*0x100000001b3L;
+			for (char ch : cells) hash = (hash ^ ch)*0x100000001b3L;
+			cached = new Fingerprint(hash, current);
+			fingerprint = cached;
+		}
+		return cached.hash;
+	}
+
+	/**
+	 * Content hash together with the version of the grid it was computed for
+	 */
+	private static class Fingerprint {
+		final long hash;
+		final int version;
+
+		Fingerprint(long hash, int version) {
+			this.hash = hash;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Checks if the specified coordinates lie inside the grid
+	 * @param row row index
+	 * @param column column index
+	 * @param aisle aisle index
+	 * @return boolean indicating if the coordinates are in bounds
+	 */
+	public boolean inBounds(int row, int column, int aisle) {
+		return row >= 0 && row < rows
+			&& column >= 0 && column < columns
+			&& aisle >= 0 && aisle < aisles;
+	}
+
+	/**
+	 * Finds the box of cells a line of the specified length can start from in the specified direction without leaving the grid
+	 * @param dir index into DIRECTIONS of the direction the line runs in
+	 * @param len number of characters in the line
+	 * @return {first row, row after last, first column, column after last, first aisle, aisle after last} (empty ranges if none fit)
+	 */
+	public int[] startBox(int dir, int len) {
+		final int[] vec = DIRECTIONS[dir];
+		final int[] sizes = {rows, columns, aisles};
+		final int[] box = new int[6];
+		for (int axis = 0; axis < 3; axis++) {
+			box[2*axis] = (vec[axis] < 0) ? len-1 : 0; //moving backwards needs room behind the start
+			box[2*axis+1] = (vec[axis] > 0) ? sizes[axis]-len+1 : sizes[axis]; //moving forwards needs room ahead of it
+			if (box[2*axis+1] < box[2*axis]) box[2*axis+1] = box[2*axis];
+		}
+		return box;
+	}
+
+	/**
+	 * Counts the placements of a line of the specified length that stay inside the grid, direction by direction
+	 * @param len number of characters in the line
+	 * @return for each index d into DIRECTIONS, the number of in-bounds (start, direction) pairs using directions 0 to d
+	 */
+	public long[] placementCounts(int len) {
+		final long[] counts = new long[DIRECTIONS.length];
+		long total = 0;
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			final int[] box = startBox(d, len);
+			total += (long)(box[1]-box[0])*(box[3]-box[2])*(box[5]-box[4]);
+			counts[d] = total;
+		}
+		return counts;
+	}
+
+	/**
+	 * Lists, for each index along an axis, the directions a line of the specified length can run in from there
+	 * without leaving the grid along that axis. AND-ing the masks of a cell's row, column and aisle gives
+	 * the directions the line fits in from that cell.
+	 * @param axis 0 for rows, 1 for columns, 2 for aisles
+	 * @param len number of characters in the line
+	 * @return bitmask of allowed directions (bit d for DIRECTIONS[d]) for each index along the axis
+	 */
+	public int[] directionMasks(int axis, int len) {
+		final int size = (axis == 0) ? rows : (axis == 1) ? columns : aisles;
+		final int[] masks = new int[size];
+		for (int i = 0; i < size; i++) masks[i] = axisMask(axis, i, size, len);
+		return masks;
+	}
+
+	/**
+	 * Finds the directions a line of the specified length can run in from the specified cell without leaving the grid
+	 * @param row row index of the first character
+	 * @param column column index of the first character
+	 * @param aisle aisle index of the first character
+	 * @param len number of characters in the line
+	 * @return bitmask of allowed directions (bit d for DIRECTIONS[d])
+	 */
+	public int allowedDirections(int row, int column, int aisle, int len) {
+		return axisMask(0, row, rows, len) & axisMask(1, column, columns, len) & axisMask(2, aisle, aisles, len);
+	}
+
+	/**
+	 * Finds the directions a line of the specified length can run in from an index without leaving the grid along one axis
+	 * @param axis 0 for rows, 1 for columns, 2 for aisles
+	 * @param index index along the axis
+	 * @param size size of the grid along the axis
+	 * @param len number of characters in the line
+	 * @return bitmask of allowed directions (bit d for DIRECTIONS[d])
+	 */
+	private static int axisMask(int axis, int index, int size, int len) {
+		int mask = AXIS_MASKS[axis][1]; //staying put along this axis always fits
+		if (index >= len-1) mask |= AXIS_MASKS[axis][0]; //room to move backwards
+		if (index <= size-len) mask |= AXIS_MASKS[axis][2]; //room to move forwards
+		return mask;
+	}
+
+	/**
+	 * Counts the cells of the line running from the specified cell in the specified direction before it leaves the grid
+	 * @param row row index of the first cell
+	 * @param column column index of the first cell
+	 * @param aisle aisle index of the first cell
+	 * @param dir index into DIRECTIONS of the direction the line runs in
+	 * @return number of cells on the line, the first one included
+	 */
+	public int lineLength(int row, int column, int aisle, int dir) {
+		final int[] vec = DIRECTIONS[dir];
+		return Math.min(steps(row, vec[0], rows), Math.min(steps(column, vec[1], columns), steps(aisle, vec[2], aisles)));
+	}
+
+	/**
+	 * Counts the cells left on a line along one axis
+	 * @param index current index along the axis
+	 * @param delta movement along the axis per step
+	 * @param size size of the grid along the axis
+	 * @return number of steps before leaving the grid along this axis
+	 */
+	private static int steps(int index, int delta, int size) {
+		if (delta > 0) return size-index;
+		else if (delta < 0) return index+1;
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Looks up the index into DIRECTIONS of a direction vector
+	 * @param dx movement along the first dimension (-1, 0 or 1)
+	 * @param dy movement along the second dimension (-1, 0 or 1)
+	 * @param dz movement along the third dimension (-1, 0 or 1)
+	 * @return index into DIRECTIONS (or -1 for the zero vector)
+	 */
+	static int direction(int dx, int dy, int dz) {
+		final int i = (dx+1)*9+(dy+1)*3+(dz+1); //index among all 27 vectors, zero vector included
+		return (i == 13) ? -1 : (i < 13) ? i : i-1;
+	}
+
+	/**
+	 * Encodes a match as a single long that orders matches the way a row/column/aisle sweep finds them:
+	 * by starting cell offset, then by index into DIRECTIONS
+	 * @param offset offset of the first character's cell
+	 * @param dir index into DIRECTIONS of the direction the word runs in
+	 * @return encoded match
+	 */
+	static long hit(int offset, int dir) {
+		return (long)offset*DIRECTIONS.length+dir;
+	}
+
+	/**
+	 * Produces array representing the positions of characters of an encoded match
+	 * @param hit the match's starting cell offset and direction, encoded by hit(offset, dir)
+	 * @param len number of characters in the word
+	 * @return two-dimensional array of integers representing positions of each character in the word
+	 */
+	public int[][] positions(long hit, int len) {
+		final int offset = (int)(hit/DIRECTIONS.length);
+		final int[] vec = DIRECTIONS[(int)(hit%DIRECTIONS.length)];
+		final int row = rowOf(offset), column = columnOf(offset), aisle = aisleOf(offset);
+		final int[][] arr = new int[len][];
+
+		for (int i = 0; i < len; i++) {
+			arr[i] = new int[]{row+vec[0]*i, column+vec[1]*i, aisle+vec[2]*i};
+		}
+		return arr;
+	}
+
+	/**
+	 * Lists the (nonzero) unit directions in search order
+	 * @return array of {x, y, z} direction vectors
+	 */
+	private static int[][] buildDirections() {
+		final int[][] directions = new int[26][];
+		int i = 0;
+		for (int x = -1; x <= 1; x++) {
+			for (int y = -1; y <= 1; y++) {
+				for (int z = -1; z <= 1; z++) {
+					if (x != 0 || y != 0 || z != 0) directions[i++] = new int[]{x, y, z};
+				}
+			}
+		}
+		return directions;
+	}
+
+	/**
+	 * Groups the directions by how they move along each axis
+	 * @return for each axis, the bitmasks of directions moving -1, 0 and +1 along it
+	 */
+	private static int[][] buildAxisMasks() {
+		final int[][] masks = new int[3][3];
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			for (int axis = 0; axis < 3; axis++) masks[axis][DIRECTIONS[d][axis]+1] |= 1 << d;
+		}
+		return masks;
+	}
+
+	/**
+	 * Direct access to the backing array for tight loops; callers must not resize or retain it
+	 * @return backing array of the grid
+	 */
+	char[] cells() { return this.cells; }
+}
@@ -0,0 +1,46 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time budget and cancellation token for generation. It expires when its time is up, when cancel is called
+ * (from any thread), or when the thread checking it is interrupted. Checking it costs one clock read, so it can be
+ * checked on every placement attempt.
+ */
+public class Deadline {
+	private static final long MAX_BUDGET = Long.MAX_VALUE/2; //nanoTime() readings only compare correctly while they are less than 2^63 apart
+	private final long end; //System.nanoTime() at which the budget runs out
+	private final boolean timed;
+	private volatile boolean cancelled;
+
+	private Deadline(long end, boolean timed) {
+		this.end = end;
+		this.timed = timed;
+	}
+
+	/**
+	 * @param millis time budget in milliseconds, starting now (budgets beyond about 146 years are cut down to that)
+	 * @return deadline that expires once the budget is spent (or when cancelled)
+	 * @throws IllegalArgumentException if the budget is negative
+	 */
+	public static Deadline after(long millis) {
+		if (millis < 0) throw new IllegalArgumentException("negative time budget: "+millis);
+		return new Deadline(System.nanoTime()+Math.min(TimeUnit.MILLISECONDS.toNanos(millis), MAX_BUDGET), true);
+	}
+
+	/**
+	 * @return deadline with no time limit, which only expires when cancelled
+	 */
+	public static Deadline none() {
+		return new Deadline(0, false);
+	}
+
+	public void cancel() { this.cancelled = true; }
+	public boolean isCancelled() { return this.cancelled; }
+
+	/**
+	 * Checks if generation should stop
+	 * @return boolean indicating if the deadline has passed, it was cancelled or the current thread was interrupted
+	 */
+	public boolean isExpired() {
+		return cancelled || (timed && System.nanoTime()-end >= 0) || Thread.currentThread().isInterrupted();
+	}
+}
@@ -0,0 +1,225 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Finds every word of a (possibly very large) dictionary that occurs anywhere in a grid.
+ * The dictionary is loaded once into a compact trie, and the grid is walked from each cell in each direction
+ * only for as long as the letters read so far are a prefix of some dictionary word.
+ */
+public class DictionarySolver {
+	static final int DENSE_CHILDREN = 8; //nodes with at least this many children get a direct lookup table
+
+	private final String[] words;
+
+	//trie nodes, stored as parallel arrays; node 0 is the root
+	private int[] firstChild; //node -> first child (or -1)
+	private int[] nextSibling; //node -> next child of the same parent (or -1)
+	private char[] label; //node -> character on the edge into it
+	private int[] wordHead; //node -> first dictionary index ending here (or -1)
+	private final int[] wordNext; //dictionary index -> next index ending at the same node (or -1)
+	private int nodes;
+
+	//direct lookup tables for nodes with many children (the root and the first few levels of a large dictionary)
+	private int[] denseStart; //node -> start of its table in dense (or -1 to scan siblings)
+	private char[] denseLow; //node -> character of the first table entry
+	private int[] denseLength; //node -> number of table entries
+	private int[] dense; //concatenated tables: entry ch-denseLow[node] is the child along ch (or -1)
+
+	/**
+	 * Loads the specified dictionary into a trie
+	 * @param words dictionary words (null or empty entries are ignored)
+	 */
+	public DictionarySolver(String[] words) {
+		this.words = words.clone();
+		this.wordNext = new int[words.length];
+		final int capacity = 16;
+		this.firstChild = new int[capacity];
+		this.nextSibling = new int[capacity];
+		this.label = new char[capacity];
+		this.wordHead = new int[capacity];
+		firstChild[0] = nextSibling[0] = wordHead[0] = -1;
+		this.nodes = 1;
+
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] == null || words[i].isEmpty()) continue;
+			int node = 0;
+			for (int j = 0; j < words[i].length(); j++) node = childOrAdd(node, words[i].charAt(j));
+			wordNext[i] = wordHead[node];
+			wordHead[node] = i;
+		}
+		densify();
+	}
+
+	/**
+	 * Builds direct lookup tables for the nodes with at least DENSE_CHILDREN children
+	 */
+	private void densify() {
+		denseStart = new int[nodes];
+		denseLow = new char[nodes];
+		denseLength = new int[nodes];
+		Arrays.fill(denseStart, -1);
+		int size = 0;
+		for (int node = 0; node < nodes; node++) {
+			int children = 0;
+			char low = Character.MAX_VALUE, high = 0;
+			for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+				children++;
+				low = (char)Math.min(low, label[child]);
+				high = (char)Math.max(high, label[child]);
+			}
+			if (children < DENSE_CHILDREN) continue;
+			denseStart[node] = size;
+			denseLow[node] = low;
+			denseLength[node] = high-low+1;
+			size += denseLength[node];
+		}
+
+		dense = new int[size];
+		Arrays.fill(dense, -1);
+		for (int node = 0; node < nodes; node++) {
+			if (denseStart[node] < 0) continue;
+			for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+				dense[denseStart[node]+label[child]-denseLow[node]] = child;
+			}
+		}
+	}
+
+	/**
+	 * Loads a dictionary file holding one word per line
+	 * @param filename name of the dictionary file
+	 * @return solver for the words in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static DictionarySolver load(String filename) throws IOException {
+		final List<String> words = new ArrayList<String>();
+		try (final BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				line = line.trim();
+				if (!line.isEmpty()) words.add(line);
+			}
+		}
+		return new DictionarySolver(words.toArray(new String[words.size()]));
+	}
+
+	public String[] getWords() { return this.words.clone(); }
+	public int getNodeCount() { return this.nodes; }
+
+	/**
+	 * Finds every dictionary word in the specified grid.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @return a list (aligned with the dictionary) of the locations of each word's letters, or null for words not in the grid
+	 */
+	public int[][][] solve(char[][][] grid) {
+		return solve(CharGrid.fromArray(grid));
+	}
+
+	/**
+	 * Finds every dictionary word in the specified flat grid. Each word's location is the one WordSearch3D.search would report.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @return a list (aligned with the dictionary) of the locations of each word's letters, or null for words not in the grid
+	 */
+	public int[][][] solve(CharGrid grid) {
+		final int[][][] locations = new int[words.length][][];
+		if (grid == null) return locations;
+		final long[] best = new long[words.length];
+		Arrays.fill(best, CharGrid.NO_HIT);
+		final char[] cells = grid.cells();
+		final int rows = grid.getRows(), columns = grid.getColumns(), aisles = grid.getAisles();
+		int offset = 0;
+
+		//cells in ascending offset, then directions in ascending order, is search order, so the first hit of a word is its best
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				for (int a = 0; a < aisles; a++, offset++) {
+					final int start = child(0, cells[offset]);
+					if (start < 0) continue; //no dictionary word starts with this letter
+					record(best, start, offset, 0);
+					for (int d = 0; d < CharGrid.DIRECTIONS.length; d++) {
+						final int stride = grid.stride(d);
+						final int steps = grid.lineLength(r, c, a, d);
+						int node = start, cell = offset;
+						for (int i = 1; i < steps; i++) {
+							cell += stride;
+							node = child(node, cells[cell]);
+							if (node < 0) break; //no dictionary word continues this way
+							record(best, node, offset, d);
+						}
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < words.length; i++) {
+			if (best[i] != CharGrid.NO_HIT) locations[i] = grid.positions(best[i], words[i].length());
+		}
+		return locations;
+	}
+
+	/**
+	 * Finds the dictionary words present in the specified grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @return the words found, in dictionary order
+	 */
+	public List<String> findWords(CharGrid grid) {
+		final int[][][] locations = solve(grid);
+		final List<String> found = new ArrayList<String>();
+		for (int i = 0; i < words.length; i++) if (locations[i] != null) found.add(words[i]);
+		return found;
+	}
+
+	/**
+	 * Records a match for every word ending at a trie node that has not been found yet
+	 * @param best best match so far of each word
+	 * @param node trie node reached
+	 * @param offset offset of the first character's cell
+	 * @param dir index into CharGrid.DIRECTIONS of the direction read
+	 */
+	private void record(long[] best, int node, int offset, int dir) {
+		for (int i = wordHead[node]; i >= 0; i = wordNext[i]) {
+			if (best[i] == CharGrid.NO_HIT) best[i] = CharGrid.hit(offset, dir);
+		}
+	}
+
+	/**
+	 * Finds the child of a trie node along an edge
+	 * @param node parent node
+	 * @param ch character on the edge
+	 * @return child node (or -1 if there is none)
+	 */
+	private int child(int node, char ch) {
+		final int start = denseStart[node];
+		if (start >= 0) {
+			final int i = ch-denseLow[node];
+			return (i >= 0 && i < denseLength[node]) ? dense[start+i] : -1;
+		}
+		for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+			if (label[child] == ch) return child;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the child of a trie node along an edge, adding it if needed
+	 * @param node parent node
+	 * @param ch character on the edge
+	 * @return child node
+	 */
+	private int childOrAdd(int node, char ch) {
+		for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+			if (label[child] == ch) return child;
+		}
+		if (nodes == label.length) {
+			firstChild = Arrays.copyOf(firstChild, 2*nodes);
+			nextSibling = Arrays.copyOf(nextSibling, 2*nodes);
+			label = Arrays.copyOf(label, 2*nodes);
+			wordHead = Arrays.copyOf(wordHead, 2*nodes);
+		}
+		final int child = nodes++;
+		label[child] = ch;
+		firstChild[child] = -1;
+		wordHead[child] = -1;
+		nextSibling[child] = firstChild[node];
+		firstChild[node] = child;
+		return child;
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * The outcome of a generation run that may place only some of the words it was asked for:
+ * the grid, plus where each requested word was placed (or null for the words left out).
+ */
+public class GenerationResult {
+	private final CharGrid grid;
+	private final String[] words;
+	private final int[][][] locations;
+	private final int placed;
+
+	/**
+	 * @param grid generated grid
+	 * @param words words requested
+	 * @param locations list (aligned with words) of the locations of each placed word's letters, or null for words not placed
+	 */
+	public GenerationResult(CharGrid grid, String[] words, int[][][] locations) {
+		this.grid = grid;
+		this.words = words;
+		this.locations = locations;
+		int count = 0;
+		for (int[][] location : locations) if (location != null) count++;
+		this.placed = count;
+	}
+
+	public CharGrid getGrid() { return this.grid; }
+	public String[] getWords() { return this.words; }
+	public int[][][] getLocations() { return this.locations; }
+	public int getPlacedCount() { return this.placed; }
+	public int getRequestedCount() { return this.words.length; }
+	public boolean isComplete() { return this.placed == this.words.length; }
+
+	/**
+	 * Lists the requested words that were placed
+	 * @return placed words, in request order
+	 */
+	public String[] getPlacedWords() {
+		return select(true);
+	}
+
+	/**
+	 * Lists the requested words that were left out
+	 * @return words not placed, in request order
+	 */
+	public String[] getMissingWords() {
+		return select(false);
+	}
+
+	private String[] select(boolean wasPlaced) {
+		final String[] selected = new String[wasPlaced ? placed : words.length-placed];
+		int n = 0;
+		for (int i = 0; i < words.length; i++) {
+			if ((locations[i] != null) == wasPlaced) selected[n++] = words[i];
+		}
+		return selected;
+	}
+}
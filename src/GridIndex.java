@@ -0,0 +1,74 @@
+/**
+ * Index from each character of a CharGrid to the offsets of the cells holding it.
+ * Offsets for a character are packed together in ascending order, so scanning them visits
+ * cells in the same order as a row/column/aisle sweep of the grid.
+ * The index is a snapshot: once the grid is changed, querying it throws IllegalStateException and it must be rebuilt.
+ */
+public class GridIndex {
+	private final CharGrid grid;
+	private final int version; //version of the grid the index was built from
+	private final int[] starts; //character -> index of its first offset (starts[ch+1] is one past its last)
+	private final int[] offsets; //cell offsets grouped by character
+
+	/**
+	 * Builds the index for the specified grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 */
+	public GridIndex(CharGrid grid) {
+		this.grid = grid;
+		this.version = grid.getVersion();
+		final char[] cells = grid.cells();
+		int maxChar = 0;
+		for (char ch : cells) if (ch > maxChar) maxChar = ch;
+
+		this.starts = new int[maxChar+2];
+		for (char ch : cells) starts[ch+1]++; //count each character
+		for (int ch = 1; ch < starts.length; ch++) starts[ch] += starts[ch-1]; //turn counts into start indices
+
+		this.offsets = new int[cells.length];
+		final int[] fill = starts.clone();
+		for (int i = 0; i < cells.length; i++) offsets[fill[cells[i]]++] = i;
+	}
+
+	public CharGrid getGrid() { return this.grid; }
+	public boolean isCurrent() { return grid.getVersion() == this.version; }
+
+	/**
+	 * Counts the cells holding the specified character
+	 * @param ch character to look up
+	 * @return number of cells holding the character
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	public int count(char ch) {
+		return end(ch)-first(ch);
+	}
+
+	/**
+	 * Makes sure the grid has not been written to since the index was built
+	 * @throws IllegalStateException if it has
+	 */
+	private void checkCurrent() {
+		if (!isCurrent()) throw new IllegalStateException("grid changed since the index was built");
+	}
+
+	/**
+	 * @param ch character to look up
+	 * @return index into offsets() of the first cell holding the character
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	int first(char ch) { checkCurrent(); return (ch+1 < starts.length) ? starts[ch] : 0; }
+
+	/**
+	 * @param ch character to look up
+	 * @return index into offsets() one past the last cell holding the character
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	int end(char ch) { checkCurrent(); return (ch+1 < starts.length) ? starts[ch+1] : 0; }
+
+	/**
+	 * Direct access to the packed offsets for tight loops; callers must not modify it
+	 * @return cell offsets grouped by character
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	int[] offsets() { checkCurrent(); return this.offsets; }
+}
@@ -0,0 +1,123 @@
+import java.util.*;
+
+/**
+ * Search engine that lays out each of the 13 line families of a grid (one per pair of opposite directions)
+ * as a single string, then finds a word and its reverse along them with String.indexOf.
+ * Only 13 directions are scanned instead of 26, and each scan is a sequential pass over contiguous text.
+ * The strings for the most recently searched grid are kept until the grid or its contents change,
+ * so an instance should not be shared between threads.
+ */
+public class LineSearch implements SearchEngine {
+	private static final char SEPARATOR = '\n'; //ends each line so matches cannot run from one line into the next
+	private static final int FAMILIES = CharGrid.DIRECTIONS.length/2;
+
+	private final WordSearch3D fallback = new WordSearch3D(); //for words containing SEPARATOR
+	private CharGrid grid;
+	private int version;
+	private final String[] texts = new String[FAMILIES]; //lines of each family, joined by SEPARATOR
+	private final int[][] lineStarts = new int[FAMILIES][]; //index into the text where each line begins
+	private final int[][] lineCells = new int[FAMILIES][]; //cell offset each line begins at
+	private final int[] strides = new int[FAMILIES];
+
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		if (grid == null) return null;
+		else if (word == null || word.isEmpty()) return null;
+		else if (word.indexOf(SEPARATOR) >= 0) return fallback.searchGrid(grid, word);
+		prepare(grid);
+		final long hit = findFirst(word);
+		return (hit == CharGrid.NO_HIT) ? null : grid.positions(hit, word.length());
+	}
+
+	@Override
+	public int[][][] searchForAll(CharGrid grid, String[] words) {
+		final int[][][] locations = new int[words.length][][];
+		for (int i = 0; i < words.length; i++) {
+			locations[i] = searchGrid(grid, words[i]);
+		}
+		return locations;
+	}
+
+	/**
+	 * Finds the first occurrence of a word along the prepared lines
+	 * @param word the (nonempty) word to search for
+	 * @return the word's match encoded by CharGrid.hit (or CharGrid.NO_HIT if not found)
+	 */
+	private long findFirst(String word) {
+		final int len = word.length();
+		final String reversed = new StringBuilder(word).reverse().toString();
+		final int directions = CharGrid.DIRECTIONS.length;
+		long best = CharGrid.NO_HIT;
+
+		for (int f = 0; f < FAMILIES; f++) {
+			final int dir = FAMILIES+f; //second half of DIRECTIONS holds one of each opposite pair
+			final String text = texts[f];
+			for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i+1)) {
+				best = Math.min(best, CharGrid.hit(cellAt(f, i), dir)); //starts at the first cell, running along the line
+			}
+			if (len == 1) continue; //a single letter has no second orientation
+			for (int i = text.indexOf(reversed); i >= 0; i = text.indexOf(reversed, i+1)) {
+				best = Math.min(best, CharGrid.hit(cellAt(f, i+len-1), directions-1-dir)); //starts at the last cell, running back
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Maps an index into a family's text back to a cell of the grid
+	 * @param family index of the line family
+	 * @param index index into the family's text
+	 * @return offset of the cell
+	 */
+	private int cellAt(int family, int index) {
+		int line = Arrays.binarySearch(lineStarts[family], index);
+		if (line < 0) line = -line-2; //index falls inside the line starting before it
+		return lineCells[family][line]+(index-lineStarts[family][line])*strides[family];
+	}
+
+	/**
+	 * Lays out the lines of the specified grid unless they are already laid out for its current contents
+	 * @param grid the grid of characters comprising the word search puzzle
+	 */
+	private void prepare(CharGrid grid) {
+		if (grid == this.grid && grid.getVersion() == this.version) return;
+		final char[] cells = grid.cells();
+		final int rows = grid.getRows(), columns = grid.getColumns(), aisles = grid.getAisles();
+
+		for (int f = 0; f < FAMILIES; f++) {
+			final int[] vec = CharGrid.DIRECTIONS[FAMILIES+f];
+			final int stride = grid.stride(vec[0], vec[1], vec[2]);
+			int lines = 0;
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < columns; c++) {
+					for (int a = 0; a < aisles; a++) {
+						if (!grid.inBounds(r-vec[0], c-vec[1], a-vec[2])) lines++;
+					}
+				}
+			}
+
+			final StringBuilder text = new StringBuilder(cells.length+lines);
+			final int[] starts = new int[lines], firstCells = new int[lines];
+			int line = 0;
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < columns; c++) {
+					for (int a = 0; a < aisles; a++) {
+						if (grid.inBounds(r-vec[0], c-vec[1], a-vec[2])) continue; //not the start of a line
+						starts[line] = text.length();
+						firstCells[line++] = grid.offset(r, c, a);
+						for (int rr = r, cc = c, aa = a; grid.inBounds(rr, cc, aa); rr += vec[0], cc += vec[1], aa += vec[2]) {
+							text.append(cells[grid.offset(rr, cc, aa)]);
+						}
+						text.append(SEPARATOR);
+					}
+				}
+			}
+			texts[f] = text.toString();
+			lineStarts[f] = starts;
+			lineCells[f] = firstCells;
+			strides[f] = stride;
+		}
+		this.grid = grid;
+		this.version = grid.getVersion();
+	}
+}
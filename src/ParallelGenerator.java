@@ -0,0 +1,114 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Generation strategy that runs the built-in random attempts (WordSearch3D.tryMake) speculatively on a ForkJoinPool.
+ * Each worker has its own WordSearch3D, with a random stream split off the caller's, and its own copy of the starting grid, and keeps making attempts until
+ * one worker succeeds or the shared attempt budget runs out. The first success wins and cancels a shared Deadline,
+ * which the other workers check before every placement, so they stop within one placement rather than after a whole attempt;
+ * the winning placements are then replayed into the caller's puzzle.
+ * When each attempt rarely succeeds, this cuts the time to the first success by about the number of workers.
+ * A generator made with ParallelGenerator(int) owns its pool and should be closed when no longer needed.
+ */
+public class ParallelGenerator implements PuzzleGenerator, AutoCloseable {
+	static final int DEFAULT_MAX_ATTEMPTS = 100; //same budget as the built-in generator's MAX_TRIES
+
+	private final ForkJoinPool pool;
+	private final int workers;
+	private final int maxAttempts;
+	private final boolean ownsPool; //whether close shuts the pool down
+
+	public ParallelGenerator() {
+		this(ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism(), DEFAULT_MAX_ATTEMPTS);
+	}
+
+	public ParallelGenerator(int parallelism) {
+		this(new ForkJoinPool(parallelism), parallelism, DEFAULT_MAX_ATTEMPTS, true);
+	}
+
+	public ParallelGenerator(ForkJoinPool pool, int workers, int maxAttempts) {
+		this(pool, workers, maxAttempts, false);
+	}
+
+	private ParallelGenerator(ForkJoinPool pool, int workers, int maxAttempts, boolean ownsPool) {
+		this.pool = pool; //pool to run attempts on
+		this.workers = Math.max(workers, 1); //number of attempts run at once
+		this.maxAttempts = maxAttempts; //most attempts, across all workers
+		this.ownsPool = ownsPool;
+	}
+
+	public ForkJoinPool getPool() { return this.pool; }
+	public int getWorkers() { return this.workers; }
+	public int getMaxAttempts() { return this.maxAttempts; }
+
+	/**
+	 * Shuts down the pool if this generator created it (a common or caller-supplied pool is left running)
+	 */
+	@Override
+	public void close() {
+		if (ownsPool) pool.shutdown();
+	}
+
+	@Override
+	public boolean generate(PuzzleBuilder builder, String[] words) {
+		final CharGrid base = builder.getGrid().copy();
+		final AtomicInteger attempts = new AtomicInteger();
+		final AtomicReference<PuzzleBuilder> winner = new AtomicReference<PuzzleBuilder>(); //set once
+		final Deadline stop = Deadline.none(); //cancelled by the winner to stop the other workers mid-attempt
+		final AttemptsTask[] tasks = new AttemptsTask[workers];
+		for (int i = 0; i < workers; i++) { //split on this thread so each worker's stream depends only on the caller's seed
+			tasks[i] = new AttemptsTask(builder.getWordSearch().split(), base, words, attempts, winner, stop);
+		}
+
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		final PuzzleBuilder won = winner.get();
+		if (won == null) return false;
+		for (int i = 0; i < won.getPlacedCount(); i++) { //same starting letters and no overwrites, so every placement replays
+			final long hit = won.getHit(i);
+			builder.place(won.getWord(i), (int)(hit/CharGrid.DIRECTIONS.length), (int)(hit%CharGrid.DIRECTIONS.length));
+		}
+		return true;
+	}
+
+	/**
+	 * One worker: makes attempts on its own copy of the grid until some worker succeeds or the budget runs out
+	 */
+	private class AttemptsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final WordSearch3D wordSearch;
+		private final CharGrid base;
+		private final String[] words;
+		private final AtomicInteger attempts;
+		private final AtomicReference<PuzzleBuilder> winner;
+		private final Deadline stop;
+
+		AttemptsTask(WordSearch3D wordSearch, CharGrid base, String[] words, AtomicInteger attempts, AtomicReference<PuzzleBuilder> winner, Deadline stop) {
+			this.wordSearch = wordSearch; //this worker's own instance and random stream
+			this.base = base; //starting grid; only read
+			this.words = words;
+			this.attempts = attempts; //attempts started so far, across all workers
+			this.winner = winner;
+			this.stop = stop;
+		}
+
+		@Override
+		protected void compute() {
+			final PuzzleBuilder builder = new PuzzleBuilder(wordSearch, base.copy());
+			while (!stop.isExpired() && attempts.getAndIncrement() < maxAttempts) {
+				if (wordSearch.tryMake(builder, words, stop)) { //tryMake rolls the builder back when it fails or is stopped
+					if (winner.compareAndSet(null, builder)) stop.cancel();
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs WordSearch3D searches on a ForkJoinPool.
+ * Word lists are split across words, and a single word on a large grid is split across slabs of rows.
+ * Results are merged so they are identical to the sequential search, and work below the threshold
+ * (measured in cells times words) stays sequential to avoid fork-join overhead on small puzzles.
+ * A search made with ParallelSearch(int) owns its pool and should be closed when no longer needed.
+ */
+public class ParallelSearch implements SearchEngine, AutoCloseable {
+	static final int DEFAULT_THRESHOLD = 1 << 18;
+
+	private final ForkJoinPool pool;
+	private final int threshold;
+	private final boolean ownsPool; //whether close shuts the pool down
+	private final WordSearch3D wordSearch = new WordSearch3D();
+
+	public ParallelSearch() {
+		this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+	}
+
+	public ParallelSearch(int parallelism) {
+		this(new ForkJoinPool(parallelism), DEFAULT_THRESHOLD, true);
+	}
+
+	public ParallelSearch(ForkJoinPool pool, int threshold) {
+		this(pool, threshold, false);
+	}
+
+	private ParallelSearch(ForkJoinPool pool, int threshold, boolean ownsPool) {
+		this.pool = pool; //pool to run searches on
+		this.threshold = Math.max(threshold, 1); //cells times words below which work is not split
+		this.ownsPool = ownsPool;
+	}
+
+	public ForkJoinPool getPool() { return this.pool; }
+	public int getThreshold() { return this.threshold; }
+
+	/**
+	 * Shuts down the pool if this search created it (a common or caller-supplied pool is left running)
+	 */
+	@Override
+	public void close() {
+		if (ownsPool) pool.shutdown();
+	}
+
+	@Override
+	public int[][][] searchForAll(CharGrid grid, String[] words) {
+		if (grid == null || (long)grid.size()*words.length <= threshold) return wordSearch.searchForAll(grid, words);
+		final int[][][] locations = new int[words.length][][];
+		pool.invoke(new WordsTask(grid, words, locations, 0, words.length));
+		return locations;
+	}
+
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		if (grid == null || grid.size() <= threshold) return wordSearch.searchGrid(grid, word);
+		else if (word == null || word.isEmpty()) return null;
+		return pool.invoke(new RowsTask(grid, word.toCharArray(), 0, grid.getRows()));
+	}
+
+	/**
+	 * Searches a range of the word list, splitting it in half until each part is below the threshold
+	 */
+	private class WordsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final CharGrid grid;
+		private final String[] words;
+		private final int[][][] locations;
+		private final int from, to;
+
+		WordsTask(CharGrid grid, String[] words, int[][][] locations, int from, int to) {
+			this.grid = grid;
+			this.words = words;
+			this.locations = locations; //shared result array; each task only writes its own range
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to-from == 1) { //may still split across rows, run in this task rather than through pool.invoke
+				final String word = words[from];
+				if (grid.size() <= threshold) locations[from] = wordSearch.searchGrid(grid, word);
+				else if (word != null && !word.isEmpty()) locations[from] = new RowsTask(grid, word.toCharArray(), 0, grid.getRows()).compute();
+			}
+			else if ((long)grid.size()*(to-from) <= threshold) {
+				final int[][][] part = wordSearch.searchForAll(grid, Arrays.copyOfRange(words, from, to));
+				System.arraycopy(part, 0, locations, from, part.length);
+			}
+			else {
+				final int mid = (from+to) >>> 1;
+				invokeAll(new WordsTask(grid, words, locations, from, mid), new WordsTask(grid, words, locations, mid, to));
+			}
+		}
+	}
+
+	/**
+	 * Searches a slab of rows for a single word, preferring a match in the lower half so the result matches a sequential sweep
+	 */
+	private class RowsTask extends RecursiveTask<int[][]> {
+		private static final long serialVersionUID = 1L;
+		private final CharGrid grid;
+		private final char[] letters;
+		private final int fromRow, toRow;
+
+		RowsTask(CharGrid grid, char[] letters, int fromRow, int toRow) {
+			this.grid = grid;
+			this.letters = letters;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected int[][] compute() {
+			if (toRow-fromRow <= 1 || (long)(toRow-fromRow)*grid.getRowStride() <= threshold) {
+				return wordSearch.searchRows(grid, letters, fromRow, toRow);
+			}
+			final int mid = (fromRow+toRow) >>> 1;
+			final RowsTask upper = new RowsTask(grid, letters, mid, toRow);
+			upper.fork();
+			final int[][] lower = new RowsTask(grid, letters, fromRow, mid).compute();
+			if (lower != null) {
+				upper.cancel(false); //a match in the lower rows always comes first
+				return lower;
+			}
+			return upper.join();
+		}
+	}
+}
@@ -0,0 +1,343 @@
+import java.util.*;
+
+/**
+ * A puzzle under construction: a mutable CharGrid plus the words placed in it so far.
+ * Every placed word keeps a recorded location and every cell knows which placed words cover it,
+ * so writing a word only re-checks the placed words whose letters it overwrote, instead of searching
+ * the whole grid for every word placed so far. An overwritten word is looked for elsewhere using an index
+ * from each letter to the cells holding it, which is built the first time it is needed and then updated
+ * cell by cell as the grid is written.
+ * The cells covered by placed words also form an occupancy map, which canPlace uses to reject
+ * a placement that would overwrite a placed word by looking at the placement's own cells only.
+ * Every change is written to an undo journal, so a failed attempt is rolled back in time proportional to
+ * the cells it wrote instead of copying the grid for every attempt.
+ */
+public class PuzzleBuilder {
+	private final WordSearch3D wordSearch;
+	private final CharGrid grid;
+
+	//placed words, in the order they were placed
+	private char[][] words = new char[8][];
+	private long[] hits = new long[8]; //recorded location of each placed word, encoded by CharGrid.hit
+	private int[] checked = new int[8]; //call to place that last queued each word for re-checking
+	private int placed, calls;
+
+	//cell -> placed words covering it, as linked lists of entries; entries of words that have since moved are skipped
+	private final int[] cellHead; //cell -> first entry (or -1)
+	private int[] entryWord = new int[16]; //entry -> placed word
+	private int[] entryNext = new int[16]; //entry -> next entry for the same cell (or -1)
+	private int[] entryCell = new int[16]; //entry -> cell it links from
+	private int entries;
+	private final int[] locks; //cell -> number of placed words recorded on it; a locked cell keeps its letter
+
+	//letter -> cells holding it; null until a placed word is first overwritten (generation never overwrites one)
+	private int[][] letterCells;
+	private int[] letterCounts;
+	private int[] slots; //cell -> its index in letterCells of its letter
+
+	//undo journal, oldest change first: a write is (cell << 16 | old letter), a placement is PLACED | entries before it,
+	//and a move is the word's old location followed by MOVED | word << 32 | entries before it
+	private static final long PLACED = 1L << 62, MOVED = 2L << 62;
+	private long[] journal = new long[64];
+	private int journaled;
+
+	/**
+	 * Starts building on the specified grid, which is written to in place
+	 * @param wordSearch search used to look for overwritten words
+	 * @param grid grid to place words in
+	 */
+	public PuzzleBuilder(WordSearch3D wordSearch, CharGrid grid) {
+		this.wordSearch = wordSearch;
+		this.grid = grid;
+		this.cellHead = new int[grid.size()];
+		this.locks = new int[grid.size()];
+		Arrays.fill(cellHead, -1);
+	}
+
+	public WordSearch3D getWordSearch() { return this.wordSearch; }
+	public CharGrid getGrid() { return this.grid; }
+	public int getPlacedCount() { return this.placed; }
+	public boolean isLocked(int cell) { return this.locks[cell] > 0; }
+	public String getWord(int i) { return new String(words[i]); }
+
+	/**
+	 * @param i index of the word, in the order words were placed
+	 * @return recorded location of the word, encoded by CharGrid.hit
+	 */
+	long getHit(int i) { return this.hits[i]; }
+
+	/**
+	 * Produces the recorded location of a placed word
+	 * @param i index of the word, in the order words were placed
+	 * @return list of the (3D) locations of the word's letters
+	 */
+	public int[][] getLocation(int i) {
+		return grid.positions(hits[i], words[i].length);
+	}
+
+	/**
+	 * Marks the current state of the puzzle so that later changes can be rolled back to it
+	 * @return mark to pass to rollback
+	 */
+	public int mark() {
+		return this.journaled;
+	}
+
+	/**
+	 * Undoes every change made since the specified mark, newest first: written cells get their old letters back,
+	 * words placed since are removed and words moved since return to their old locations.
+	 * @param mark value returned by mark (marks taken after it are no longer valid)
+	 */
+	public void rollback(int mark) {
+		while (journaled > mark) {
+			final long change = journal[--journaled];
+			final long kind = change & (3L << 62);
+			if (kind == 0) write((int)(change >>> 16), (char)change);
+			else if (kind == PLACED) {
+				lock(--placed, -1);
+				unlink((int)change);
+			}
+			else {
+				final int w = (int)((change & ~MOVED) >>> 32);
+				lock(w, -1);
+				hits[w] = journal[--journaled];
+				lock(w, 1);
+				unlink((int)change);
+			}
+		}
+	}
+
+	/**
+	 * Writes a word into the grid, as long as every word placed so far can still be found afterwards.
+	 * Only placed words covering a cell whose letter changes are looked for again; if any of them
+	 * is no longer in the grid, the placement is rolled back and the word is not placed.
+	 * @param word word to place
+	 * @param offset offset of the cell for the first character
+	 * @param dir index into CharGrid.DIRECTIONS of the direction the word runs in
+	 * @return boolean indicating if the word was placed (false if it leaves the grid or would remove a placed word)
+	 */
+	public boolean place(String word, int offset, int dir) {
+		final char[] letters = word.toCharArray();
+		if (letters.length == 0 || !fits(offset, dir, letters.length)) return false;
+		final int stride = grid.stride(dir);
+		final int mark = mark();
+		int[] affected = new int[4];
+		int count = 0;
+		calls++;
+
+		for (int i = 0, cell = offset; i < letters.length; i++, cell += stride) {
+			if (grid.get(cell) == letters[i]) continue; //letter shared with the grid; nothing to re-check
+			for (int e = (locks[cell] == 0) ? -1 : cellHead[cell]; e >= 0; e = entryNext[e]) { //an unlocked cell has no word to re-check
+				final int w = entryWord[e];
+				if (checked[w] == calls || !covers(w, cell)) continue; //already queued, or moved since
+				checked[w] = calls;
+				if (count == affected.length) affected = Arrays.copyOf(affected, 2*count);
+				affected[count++] = w;
+			}
+			log(((long)cell << 16) | grid.get(cell));
+			write(cell, letters[i]);
+		}
+
+		final long[] moved = new long[count];
+		for (int k = 0; k < count; k++) {
+			moved[k] = find(words[affected[k]]);
+			if (moved[k] == CharGrid.NO_HIT) { //an earlier word is gone; undo the writes
+				rollback(mark);
+				return false;
+			}
+		}
+
+		for (int k = 0; k < count; k++) {
+			log(hits[affected[k]]);
+			log(MOVED | ((long)affected[k] << 32) | entries);
+			lock(affected[k], -1);
+			record(affected[k], moved[k]);
+		}
+		if (placed == words.length) {
+			words = Arrays.copyOf(words, 2*placed);
+			hits = Arrays.copyOf(hits, 2*placed);
+			checked = Arrays.copyOf(checked, 2*placed);
+		}
+		words[placed] = letters;
+		log(PLACED | entries);
+		record(placed++, CharGrid.hit(offset, dir));
+		return true;
+	}
+
+	/**
+	 * Checks a placement against the occupancy map: it may only change the letters of cells no placed word is recorded on,
+	 * so letters shared with placed words (where words intersect) are allowed but overwriting them is not
+	 * @param word word to place
+	 * @param offset offset of the cell for the first character
+	 * @param dir index into CharGrid.DIRECTIONS of the direction the word runs in
+	 * @return boolean indicating if the word fits without touching any placed word's letters
+	 */
+	public boolean canPlace(String word, int offset, int dir) {
+		return shared(word, offset, dir) >= 0;
+	}
+
+	/**
+	 * Counts the letters a placement would share with placed words, checking it against the occupancy map as canPlace does
+	 * @param word word to place
+	 * @param offset offset of the cell for the first character
+	 * @param dir index into CharGrid.DIRECTIONS of the direction the word runs in
+	 * @return number of the word's cells already locked by placed words (or -1 if the word cannot be placed there)
+	 */
+	public int shared(String word, int offset, int dir) {
+		if (word.isEmpty() || !fits(offset, dir, word.length())) return -1;
+		final int stride = grid.stride(dir);
+		int shared = 0;
+		for (int i = 0, cell = offset; i < word.length(); i++, cell += stride) {
+			if (locks[cell] == 0) continue;
+			else if (grid.get(cell) != word.charAt(i)) return -1; //would overwrite a placed word
+			shared++;
+		}
+		return shared;
+	}
+
+	/**
+	 * Checks if a word of the specified length starting at the specified cell stays inside the grid
+	 * @param offset offset of the cell for the first character
+	 * @param dir index into CharGrid.DIRECTIONS of the direction the word runs in
+	 * @param len number of characters in the word
+	 * @return boolean indicating if every character lands in the grid
+	 */
+	private boolean fits(int offset, int dir, int len) {
+		if (offset < 0 || offset >= grid.size()) return false;
+		final int[] vec = CharGrid.DIRECTIONS[dir];
+		return grid.inBounds(grid.rowOf(offset)+vec[0]*(len-1), grid.columnOf(offset)+vec[1]*(len-1), grid.aisleOf(offset)+vec[2]*(len-1));
+	}
+
+	/**
+	 * Checks if a placed word's recorded location covers a cell
+	 * @param w index of the placed word
+	 * @param cell offset of the cell
+	 * @return boolean indicating if one of the word's letters is recorded at the cell
+	 */
+	private boolean covers(int w, int cell) {
+		final int start = (int)(hits[w]/CharGrid.DIRECTIONS.length);
+		if (words[w].length == 1) return cell == start; //a single letter may be recorded in a direction whose stride is 0
+		final int stride = grid.stride((int)(hits[w]%CharGrid.DIRECTIONS.length));
+		final int diff = cell-start;
+		if (diff % stride != 0) return false;
+		final int i = diff/stride;
+		return i >= 0 && i < words[w].length;
+	}
+
+	/**
+	 * Records the location of a placed word, linking it from and locking each cell it covers
+	 * @param w index of the placed word
+	 * @param hit location of the word, encoded by CharGrid.hit
+	 */
+	private void record(int w, long hit) {
+		hits[w] = hit;
+		final int start = (int)(hit/CharGrid.DIRECTIONS.length);
+		final int stride = grid.stride((int)(hit%CharGrid.DIRECTIONS.length));
+		if (entries+words[w].length > entryWord.length) {
+			final int capacity = Math.max(2*entryWord.length, entries+words[w].length);
+			entryWord = Arrays.copyOf(entryWord, capacity);
+			entryNext = Arrays.copyOf(entryNext, capacity);
+			entryCell = Arrays.copyOf(entryCell, capacity);
+		}
+		for (int i = 0, cell = start; i < words[w].length; i++, cell += stride) {
+			entryWord[entries] = w;
+			entryNext[entries] = cellHead[cell];
+			entryCell[entries] = cell;
+			cellHead[cell] = entries++;
+			locks[cell]++;
+		}
+	}
+
+	/**
+	 * Locks or releases the cells of a placed word's recorded location
+	 * @param w index of the placed word
+	 * @param delta 1 to lock the cells, -1 to release them
+	 */
+	private void lock(int w, int delta) {
+		final int start = (int)(hits[w]/CharGrid.DIRECTIONS.length);
+		final int stride = grid.stride((int)(hits[w]%CharGrid.DIRECTIONS.length));
+		for (int i = 0, cell = start; i < words[w].length; i++, cell += stride) locks[cell] += delta;
+	}
+
+	/**
+	 * Removes the newest cell entries, down to the specified count; entries are only ever removed newest first,
+	 * so each one is still at the head of its cell's list
+	 * @param count number of entries to keep
+	 */
+	private void unlink(int count) {
+		while (entries > count) {
+			entries--;
+			cellHead[entryCell[entries]] = entryNext[entries];
+		}
+	}
+
+	/**
+	 * Appends a change to the undo journal
+	 * @param change encoded change
+	 */
+	private void log(long change) {
+		if (journaled == journal.length) journal = Arrays.copyOf(journal, 2*journaled);
+		journal[journaled++] = change;
+	}
+
+	/**
+	 * Looks for a word anywhere in the grid, only trying cells that hold its first letter
+	 * @param letters characters of the word
+	 * @return location of the word, encoded by CharGrid.hit (or CharGrid.NO_HIT if it is not in the grid)
+	 */
+	private long find(char[] letters) {
+		if (letterCells == null) indexLetters();
+		final char first = letters[0];
+		if (first >= letterCounts.length) return CharGrid.NO_HIT;
+		final int[] cells = letterCells[first];
+		for (int i = 0; i < letterCounts[first]; i++) {
+			final int cell = cells[i];
+			final int allowed = grid.allowedDirections(grid.rowOf(cell), grid.columnOf(cell), grid.aisleOf(cell), letters.length);
+			final int dir = wordSearch.findDirection(grid, cell, letters, allowed);
+			if (dir >= 0) return CharGrid.hit(cell, dir);
+		}
+		return CharGrid.NO_HIT;
+	}
+
+	/**
+	 * Writes a character to a cell, moving the cell to the character's entry in the letter index
+	 * @param cell offset of the cell
+	 * @param ch character to write
+	 */
+	private void write(int cell, char ch) {
+		if (letterCells != null) {
+			final char old = grid.get(cell);
+			final int last = letterCells[old][--letterCounts[old]]; //move the old letter's last cell into this cell's slot
+			letterCells[old][slots[cell]] = last;
+			slots[last] = slots[cell];
+			addLetter(cell, ch);
+		}
+		grid.set(cell, ch);
+	}
+
+	/**
+	 * Builds the letter index from the grid's current letters
+	 */
+	private void indexLetters() {
+		letterCells = new int[0][];
+		letterCounts = new int[0];
+		slots = new int[grid.size()];
+		for (int cell = 0; cell < grid.size(); cell++) addLetter(cell, grid.get(cell));
+	}
+
+	/**
+	 * Adds a cell to the letter index
+	 * @param cell offset of the cell
+	 * @param ch character the cell holds
+	 */
+	private void addLetter(int cell, char ch) {
+		if (ch >= letterCounts.length) {
+			letterCells = Arrays.copyOf(letterCells, ch+1);
+			letterCounts = Arrays.copyOf(letterCounts, ch+1);
+		}
+		if (letterCells[ch] == null) letterCells[ch] = new int[16];
+		else if (letterCounts[ch] == letterCells[ch].length) letterCells[ch] = Arrays.copyOf(letterCells[ch], 2*letterCounts[ch]);
+		slots[cell] = letterCounts[ch];
+		letterCells[ch][letterCounts[ch]++] = cell;
+	}
+}
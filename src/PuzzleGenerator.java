@@ -0,0 +1,13 @@
+/**
+ * A strategy for placing words while generating a puzzle, selectable at runtime with WordSearch3D.setGenerator.
+ * WordSearch3D.makeGrid validates its inputs, fills a grid with random letters and then hands it to the generator.
+ */
+public interface PuzzleGenerator {
+	/**
+	 * Places all the specified words in a puzzle under construction, without overwriting any of them.
+	 * @param builder puzzle under construction, holding random letters and no placed words
+	 * @param words the (nonempty) words to place
+	 * @return boolean indicating if every word was placed (if not, the builder may hold some of them)
+	 */
+	boolean generate(PuzzleBuilder builder, String[] words);
+}
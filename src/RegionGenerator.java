@@ -0,0 +1,176 @@
+import java.util.*;
+
+/**
+ * Generation strategy for very large grids and long word lists. The grid is split into cubic regions, and each region
+ * tracks how many of its cells are locked by placed words against a capacity set by the target fill density.
+ * Each word is placed at a random start inside a random region that still has capacity, so words spread evenly
+ * through the grid, no attempt is wasted on a full area, and placing stops once every region is full.
+ * Unlike the built-in generator it never starts over: words that do not fit are left out and reported
+ * in the GenerationResult.
+ */
+public class RegionGenerator implements PuzzleGenerator {
+	static final int DEFAULT_REGION_SIZE = 16;
+	static final double DEFAULT_DENSITY = 0.5;
+	static final int MAX_TRIES = 100; //random placements tried per word
+
+	private final int regionSize;
+	private final double density;
+
+	public RegionGenerator() {
+		this(DEFAULT_REGION_SIZE, DEFAULT_DENSITY);
+	}
+
+	public RegionGenerator(int regionSize, double density) {
+		this.regionSize = Math.max(regionSize, 1); //edge length of a region, in cells
+		this.density = density; //fraction of each region's cells words may lock
+	}
+
+	public int getRegionSize() { return this.regionSize; }
+	public double getDensity() { return this.density; }
+
+	@Override
+	public boolean generate(PuzzleBuilder builder, String[] words) {
+		return place(builder, words).isComplete();
+	}
+
+	/**
+	 * Makes a puzzle of the specified size holding as many of the specified words as fit
+	 * @param wordSearch instance whose random stream is used
+	 * @param words the words to place (null or empty entries are ignored)
+	 * @param sizeX size of the grid along first dimension
+	 * @param sizeY size of the grid along second dimension
+	 * @param sizeZ size of the grid along third dimension
+	 * @return the grid and the words placed in it (a random grid holding no words if the list is null, like WordSearch3D.make,
+	 * or null if an invalid size was provided)
+	 */
+	public GenerationResult make(WordSearch3D wordSearch, String[] words, int sizeX, int sizeY, int sizeZ) {
+		final String[] validWords = wordSearch.purgeInvalidWords(words);
+		if (sizeX < 0 || sizeY < 0 || sizeZ < 0) return null;
+		else if (validWords == null) return new GenerationResult(wordSearch.makeRandomGrid(sizeX, sizeY, sizeZ), new String[0], new int[0][][]);
+		return place(new PuzzleBuilder(wordSearch, wordSearch.makeRandomGrid(sizeX, sizeY, sizeZ)), validWords);
+	}
+
+	/**
+	 * Places as many of the specified words as fit in a puzzle under construction, longest first
+	 * @param builder puzzle under construction
+	 * @param words the (nonempty) words to place
+	 * @return the grid and the words placed in it
+	 */
+	public GenerationResult place(PuzzleBuilder builder, String[] words) {
+		final CharGrid grid = builder.getGrid();
+		final SplittableRandom rng = builder.getWordSearch().getRandom();
+		final Regions regions = new Regions(builder);
+		final int[][][] locations = new int[words.length][][];
+
+		final Integer[] order = new Integer[words.length];
+		for (int i = 0; i < words.length; i++) order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return words[b].length()-words[a].length();
+			}
+		});
+
+		for (int w : order) {
+			if (regions.open == 0) break; //every region is full
+			final String word = words[w];
+			final long[] counts = grid.placementCounts(word.length());
+			if (counts[counts.length-1] == 0) continue; //fits nowhere in the grid
+
+			for (int i = 0; i < MAX_TRIES && regions.open > 0; i++) {
+				final int[] box = regions.box(regions.openList[rng.nextInt(regions.open)]);
+				final int r = box[0]+rng.nextInt(box[1]-box[0]), c = box[2]+rng.nextInt(box[3]-box[2]), a = box[4]+rng.nextInt(box[5]-box[4]);
+				int allowed = grid.allowedDirections(r, c, a, word.length());
+				if (allowed == 0) continue; //too close to the edge of the grid for this word
+				for (int skip = rng.nextInt(Integer.bitCount(allowed)); skip > 0; skip--) allowed &= allowed-1; //drop a random number of the lowest directions
+				final int dir = Integer.numberOfTrailingZeros(allowed);
+
+				final int offset = grid.offset(r, c, a);
+				if (builder.shared(word, offset, dir) < 0) continue; //would overwrite a placed word
+				regions.lock(word.length(), offset, grid.stride(dir));
+				builder.place(word, offset, dir);
+				locations[w] = builder.getLocation(builder.getPlacedCount()-1);
+				break;
+			}
+		}
+		return new GenerationResult(grid, words, locations);
+	}
+
+	/**
+	 * The grid's regions, with the number of locked cells in each and the list of regions below capacity
+	 */
+	private class Regions {
+		private final PuzzleBuilder builder;
+		private final CharGrid grid;
+		private final int rows, columns, aisles; //number of regions along each dimension
+		private final int[] locked, capacity;
+		private final int[] openList, openSlot; //regions below capacity, and each region's index in that list (or -1)
+		private int open;
+
+		Regions(PuzzleBuilder builder) {
+			this.builder = builder;
+			this.grid = builder.getGrid();
+			this.rows = (grid.getRows()+regionSize-1)/regionSize;
+			this.columns = (grid.getColumns()+regionSize-1)/regionSize;
+			this.aisles = (grid.getAisles()+regionSize-1)/regionSize;
+			final int count = rows*columns*aisles;
+			this.locked = new int[count];
+			this.capacity = new int[count];
+			this.openList = new int[count];
+			this.openSlot = new int[count];
+
+			for (int cell = 0; cell < grid.size(); cell++) {
+				final int region = regionOf(cell);
+				capacity[region]++;
+				if (builder.isLocked(cell)) locked[region]++;
+			}
+			for (int region = 0; region < count; region++) {
+				capacity[region] = (int)(capacity[region]*density);
+				openSlot[region] = -1;
+				if (locked[region] < capacity[region]) {
+					openSlot[region] = open;
+					openList[open++] = region;
+				}
+			}
+		}
+
+		/**
+		 * Counts the cells a placement is about to lock, closing regions that reach capacity
+		 * @param len number of characters in the word
+		 * @param offset offset of the cell for the first character
+		 * @param stride offset step along the word
+		 */
+		void lock(int len, int offset, int stride) {
+			for (int i = 0, cell = offset; i < len; i++, cell += stride) {
+				if (builder.isLocked(cell)) continue; //shared letter, already counted
+				final int region = regionOf(cell);
+				if (++locked[region] >= capacity[region] && openSlot[region] >= 0) { //full: swap the last open region into its slot
+					final int last = openList[--open];
+					openList[openSlot[region]] = last;
+					openSlot[last] = openSlot[region];
+					openSlot[region] = -1;
+				}
+			}
+		}
+
+		/**
+		 * @param cell offset of a cell
+		 * @return index of the region holding the cell
+		 */
+		int regionOf(int cell) {
+			return ((grid.rowOf(cell)/regionSize)*columns+grid.columnOf(cell)/regionSize)*aisles+grid.aisleOf(cell)/regionSize;
+		}
+
+		/**
+		 * @param region index of a region
+		 * @return {first row, row after last, first column, column after last, first aisle, aisle after last} of its cells
+		 */
+		int[] box(int region) {
+			final int r = region/(columns*aisles), c = region/aisles%columns, a = region%aisles;
+			return new int[]{
+				r*regionSize, Math.min((r+1)*regionSize, grid.getRows()),
+				c*regionSize, Math.min((c+1)*regionSize, grid.getColumns()),
+				a*regionSize, Math.min((a+1)*regionSize, grid.getAisles())};
+		}
+	}
+}
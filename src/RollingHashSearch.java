@@ -0,0 +1,194 @@
+import java.util.*;
+
+/**
+ * Search engine that hashes (Rabin-Karp) every window of every line of the grid whose length is a word length, and looks it
+ * up in one table of the hashes of all words and their reverses. Each line is read once, its prefix hashes giving the hash of
+ * any window in a multiply and a subtract, and a small bit filter turns away most windows before they reach the table.
+ * Characters are only compared when a window's hash matches. Like WordMatcher it walks the 13 line families once, finding
+ * reversed words as words running the other way. The work per cell grows with the number of distinct word lengths, so on
+ * word lists the built-in search (one WordMatcher pass) is faster; SearchBenchmark compares them.
+ */
+public class RollingHashSearch implements SearchEngine {
+	private static final long BASE = 0x9E3779B97F4A7C15L; //odd multiplier; arithmetic wraps mod 2^64
+	private static final int FILTER_BITS = 16; //log2 of the number of bits in the filter of word hashes
+
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		return searchForAll(grid, new String[]{word})[0];
+	}
+
+	@Override
+	public int[][][] searchForAll(CharGrid grid, String[] words) {
+		final int[][][] locations = new int[words.length][][];
+		if (grid == null) return locations;
+
+		//one table from hash to the patterns (word, orientation) having it, with a filter of the hashes' top bits in front of it
+		final PatternTable table = new PatternTable(words.length);
+		final long[] filter = new long[(1 << FILTER_BITS)/64];
+		final TreeSet<Integer> distinct = new TreeSet<Integer>();
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] == null || words[i].isEmpty()) continue;
+			distinct.add(words[i].length());
+			for (int pattern = 2*i; pattern < 2*i+((words[i].length() > 1) ? 2 : 1); pattern++) {
+				final long hash = hash(words[i], (pattern & 1) == 1);
+				table.add(hash, pattern);
+				filter[(int)(hash >>> (64-FILTER_BITS)) >>> 6] |= 1L << (hash >>> (64-FILTER_BITS));
+			}
+		}
+		if (distinct.isEmpty()) return locations;
+		final int[] lengths = new int[distinct.size()]; //ascending
+		int n = 0;
+		for (int length : distinct) lengths[n++] = length;
+		final long[] powers = new long[lengths[lengths.length-1]+1]; //BASE^k, weight of a character k cells before a window's end
+		powers[0] = 1;
+		for (int k = 1; k < powers.length; k++) powers[k] = powers[k-1]*BASE;
+
+		final long[] best = new long[words.length];
+		Arrays.fill(best, CharGrid.NO_HIT);
+		final char[] cells = grid.cells();
+		final int rows = grid.getRows(), columns = grid.getColumns(), aisles = grid.getAisles();
+		final int directions = CharGrid.DIRECTIONS.length;
+		final char[] line = new char[Math.max(rows, Math.max(columns, aisles))];
+		final long[] prefix = new long[line.length+1]; //prefix[i] is the hash of the line's first i characters
+
+		for (int d = directions/2; d < directions; d++) { //second half of DIRECTIONS holds one of each opposite pair
+			final int[] vec = CharGrid.DIRECTIONS[d];
+			final int stride = grid.stride(d);
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < columns; c++) {
+					for (int a = 0; a < aisles; a++) {
+						if (grid.inBounds(r-vec[0], c-vec[1], a-vec[2])) continue; //not the start of a line
+						final int start = grid.offset(r, c, a);
+						final int len = grid.lineLength(r, c, a, d);
+						for (int i = 0, cell = start; i < len; i++, cell += stride) { //read the line once, hashing as it goes
+							line[i] = cells[cell];
+							prefix[i+1] = prefix[i]*BASE+line[i];
+						}
+						scanLine(line, prefix, len, lengths, powers, table, filter, words, best, start, stride, d);
+					}
+				}
+			}
+		}
+
+		for (int i = 0; i < words.length; i++) {
+			if (best[i] != CharGrid.NO_HIT) locations[i] = grid.positions(best[i], words[i].length());
+		}
+		return locations;
+	}
+
+	/**
+	 * Looks up every window of a line that is as long as some word, verifying every window whose hash is in the table
+	 * @param line characters of the line
+	 * @param prefix hashes of the line's prefixes
+	 * @param len number of characters in the line
+	 * @param lengths distinct word lengths, ascending
+	 * @param powers powers of BASE up to the longest word length
+	 * @param table hashes of the words and their reverses
+	 * @param filter bitset of the top FILTER_BITS bits of the hashes in the table
+	 * @param words the words being searched for
+	 * @param best best match so far of each word
+	 * @param start offset of the line's first cell
+	 * @param stride offset step along the line
+	 * @param dir index into CharGrid.DIRECTIONS of the line's direction
+	 */
+	private void scanLine(char[] line, long[] prefix, int len, int[] lengths, long[] powers, PatternTable table, long[] filter,
+		String[] words, long[] best, int start, int stride, int dir) {
+		for (int k = 0; k < lengths.length && lengths[k] <= len; k++) {
+			final int wordLength = lengths[k];
+			final long power = powers[wordLength];
+			for (int end = wordLength; end <= len; end++) { //window [end-wordLength, end)
+				final int i = end-wordLength;
+				final long hash = prefix[end]-prefix[i]*power;
+				if ((filter[(int)(hash >>> (64-FILTER_BITS)) >>> 6] & (1L << (hash >>> (64-FILTER_BITS)))) == 0) continue; //no word has this hash
+				for (int p = table.find(hash); p >= 0; p = table.next(p)) {
+					final int word = p/2;
+					final boolean reversed = (p & 1) == 1;
+					if (words[word].length() != wordLength || !matches(line, i, words[word], reversed)) continue; //hash collision
+					final long hit = reversed
+						? CharGrid.hit(start+(end-1)*stride, CharGrid.DIRECTIONS.length-1-dir) //starts at the window's last cell, running back
+						: CharGrid.hit(start+i*stride, dir);
+					if (hit < best[word]) best[word] = hit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares a window of a line against a word
+	 * @param line characters of the line
+	 * @param from index of the window's first character
+	 * @param word word to compare against
+	 * @param reversed whether to compare against the word back to front
+	 * @return boolean indicating if the window holds the word
+	 */
+	private static boolean matches(char[] line, int from, String word, boolean reversed) {
+		final int len = word.length();
+		for (int i = 0; i < len; i++) {
+			if (line[from+i] != word.charAt(reversed ? len-1-i : i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the window hash of a word
+	 * @param word word to hash
+	 * @param reversed whether to hash the word back to front
+	 * @return hash matching the rolling hash of a window holding the word
+	 */
+	private static long hash(String word, boolean reversed) {
+		final int len = word.length();
+		long hash = 0;
+		for (int i = 0; i < len; i++) hash = hash*BASE+word.charAt(reversed ? len-1-i : i);
+		return hash;
+	}
+
+	/**
+	 * Open addressing table from a hash to the patterns (2*word for the word, 2*word+1 for its reverse) having it
+	 */
+	private static class PatternTable {
+		private long[] keys = new long[16];
+		private int[] heads = new int[16]; //first pattern with the key (or -1 for an empty slot)
+		private final int[] patternNext; //pattern -> next pattern with the same key (or -1)
+		private int size;
+
+		PatternTable(int words) {
+			Arrays.fill(heads, -1);
+			this.patternNext = new int[2*words];
+		}
+
+		void add(long key, int pattern) {
+			if (2*(size+1) > keys.length) resize();
+			final int slot = slot(keys, heads, key);
+			if (heads[slot] < 0) {
+				keys[slot] = key;
+				size++;
+			}
+			patternNext[pattern] = heads[slot];
+			heads[slot] = pattern;
+		}
+
+		int find(long key) { return heads[slot(keys, heads, key)]; }
+		int next(int pattern) { return patternNext[pattern]; }
+
+		private static int slot(long[] keys, int[] heads, long key) {
+			final int mask = keys.length-1;
+			int slot = (int)(key ^ (key >>> 32)) & mask;
+			while (heads[slot] >= 0 && keys[slot] != key) slot = (slot+1) & mask;
+			return slot;
+		}
+
+		private void resize() {
+			final long[] oldKeys = keys;
+			final int[] oldHeads = heads;
+			keys = new long[2*oldKeys.length];
+			heads = new int[2*oldHeads.length];
+			Arrays.fill(heads, -1);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldHeads[i] < 0) continue;
+				final int slot = slot(keys, heads, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				heads[slot] = oldHeads[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+import java.util.*;
+
+/**
+ * Times the search engines against each other on word lists bucketed by word length.
+ * Half of each list is read off the grid (so it is present) and half is random letters (so it is almost surely absent).
+ * Usage: java SearchBenchmark [size] [words per bucket] [repetitions]
+ */
+public class SearchBenchmark {
+	private static final int[][] BUCKETS = {{3, 4}, {5, 7}, {8, 12}, {13, 20}}; //inclusive word length ranges
+
+	public static void main(String[] args) {
+		final int size = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+		final int count = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+		final int repetitions = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		final Random rng = new Random(2103);
+		final WordSearch3D wordSearch = new WordSearch3D();
+		final CharGrid grid = wordSearch.makeRandomGrid(size, size, size);
+
+		final String[] names = {"built-in", "LineSearch", "BitSearch", "RollingHashSearch"};
+		final SearchEngine[] engines = {wordSearch, new LineSearch(), new BitSearch(), new RollingHashSearch()};
+
+		System.out.printf("%d^3 grid, %d words per bucket, best of %d runs (ms)%n", size, count, repetitions);
+		System.out.printf("%-10s", "lengths");
+		for (String name : names) System.out.printf("%20s", name);
+		System.out.println();
+
+		for (int[] bucket : BUCKETS) {
+			if (bucket[0] > size) break; //no word of this length fits
+			final String[] words = makeWords(grid, rng, count, bucket[0], Math.min(bucket[1], size));
+			final int[][][] expected = wordSearch.searchForAll(grid, words);
+			System.out.printf("%-10s", bucket[0]+"-"+bucket[1]);
+			for (SearchEngine engine : engines) {
+				long fastest = Long.MAX_VALUE;
+				for (int i = 0; i < repetitions; i++) {
+					final long start = System.nanoTime();
+					final int[][][] locations = engine.searchForAll(grid, words);
+					fastest = Math.min(fastest, System.nanoTime()-start);
+					if (!Arrays.deepEquals(expected, locations)) throw new IllegalStateException(engine.getClass().getName()+" disagrees with the built-in search");
+				}
+				System.out.printf("%20.2f", fastest/1e6);
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Makes a word list, half read off the grid along random lines and half made of random letters
+	 * @param grid grid to read words from
+	 * @param rng source of randomness
+	 * @param count number of words to make
+	 * @param minLength shortest word length
+	 * @param maxLength longest word length
+	 * @return list of words
+	 */
+	private static String[] makeWords(CharGrid grid, Random rng, int count, int minLength, int maxLength) {
+		final String[] words = new String[count];
+		for (int i = 0; i < count; i++) {
+			final int len = minLength+rng.nextInt(maxLength-minLength+1);
+			final StringBuilder word = new StringBuilder(len);
+			if (i % 2 == 1) {
+				for (int j = 0; j < len; j++) word.append((char)(rng.nextInt(26)+'a'));
+			}
+			else {
+				int[] box;
+				int dir;
+				do {
+					dir = rng.nextInt(CharGrid.DIRECTIONS.length);
+					box = grid.startBox(dir, len);
+				} while (box[0] == box[1] || box[2] == box[3] || box[4] == box[5]); //pick a direction the word fits in
+				final int offset = grid.offset(
+					box[0]+rng.nextInt(box[1]-box[0]),
+					box[2]+rng.nextInt(box[3]-box[2]),
+					box[4]+rng.nextInt(box[5]-box[4]));
+				for (int j = 0; j < len; j++) word.append(grid.get(offset+j*grid.stride(dir)));
+			}
+			words[i] = word.toString();
+		}
+		return words;
+	}
+}
@@ -0,0 +1,156 @@
+import java.util.*;
+
+/**
+ * Search engine that remembers the results of another engine, keyed by the grid's content fingerprint and the word, evicting the
+ * least recently used result first. A cached match is checked against the grid's letters before it is returned.
+ */
+public class SearchCache implements SearchEngine {
+	static final int DEFAULT_CAPACITY = 4096;
+	private static final int[][] NOT_FOUND = new int[0][]; //stands in for a cached null result
+
+	private final SearchEngine delegate;
+	private final int capacity;
+	private final LinkedHashMap<Key, int[][]> results;
+	private long hits, misses;
+
+	public SearchCache() {
+		this(new WordSearch3D(), DEFAULT_CAPACITY);
+	}
+
+	public SearchCache(SearchEngine delegate, int capacity) {
+		this.delegate = delegate; //engine to run searches the cache has not seen
+		this.capacity = Math.max(capacity, 1); //most results to keep
+		this.results = new LinkedHashMap<Key, int[][]>(16, 0.75f, true) { //access order makes the eldest entry the least recently used
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, int[][]> eldest) {
+				return size() > SearchCache.this.capacity;
+			}
+		};
+	}
+
+	public int getCapacity() { return this.capacity; }
+	public synchronized long getHits() { return this.hits; }
+	public synchronized long getMisses() { return this.misses; }
+	public synchronized int size() { return this.results.size(); }
+	public synchronized void clear() { this.results.clear(); }
+
+	// The lock only guards the map and counters; searches run outside it so threads sharing a cache search in parallel
+
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		if (grid == null || word == null || word.isEmpty()) return null;
+		final Key key = new Key(grid, word);
+		final int[][] cached = lookup(key, grid);
+		if (cached != null) return copy(cached);
+
+		final int[][] location = delegate.searchGrid(grid, word);
+		synchronized (this) {
+			misses++;
+			results.put(key, (location == null) ? NOT_FOUND : location);
+		}
+		return copy(location);
+	}
+
+	@Override
+	public int[][][] searchForAll(CharGrid grid, String[] words) {
+		final int[][][] locations = new int[words.length][][];
+		if (grid == null) return locations;
+		final Key[] keys = new Key[words.length];
+		final List<Integer> missed = new ArrayList<Integer>();
+
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] == null || words[i].isEmpty()) continue;
+			keys[i] = new Key(grid, words[i]);
+			final int[][] cached = lookup(keys[i], grid);
+			if (cached != null) locations[i] = copy(cached);
+			else missed.add(i);
+		}
+		if (missed.isEmpty()) return locations;
+
+		final String[] missedWords = new String[missed.size()];
+		for (int j = 0; j < missedWords.length; j++) missedWords[j] = words[missed.get(j)];
+		final int[][][] found = delegate.searchForAll(grid, missedWords); //search all misses together so the delegate can batch them
+		synchronized (this) {
+			for (int j = 0; j < missedWords.length; j++) {
+				misses++;
+				results.put(keys[missed.get(j)], (found[j] == null) ? NOT_FOUND : found[j]);
+			}
+		}
+		for (int j = 0; j < missedWords.length; j++) locations[missed.get(j)] = copy(found[j]);
+		return locations;
+	}
+
+	/**
+	 * Looks up a cached result, counting a hit if there is one that still holds in the grid
+	 * @param key key of the search
+	 * @param grid the grid being searched
+	 * @return cached location (NOT_FOUND for a word that is not in the grid), or null if the search has to be run
+	 */
+	private synchronized int[][] lookup(Key key, CharGrid grid) {
+		final int[][] location = results.get(key);
+		if (location == null || !matches(grid, key.word, location)) return null;
+		hits++;
+		return location;
+	}
+
+	/**
+	 * Checks a cached location against the grid, to guard against fingerprint collisions
+	 * @param grid the grid being searched
+	 * @param word the word searched for
+	 * @param location cached location (NOT_FOUND for a word that is not in the grid, which cannot be checked)
+	 * @return boolean indicating if the location holds the word (true for NOT_FOUND)
+	 */
+	private static boolean matches(CharGrid grid, String word, int[][] location) {
+		if (location == NOT_FOUND) return true;
+		if (location.length != word.length()) return false;
+		for (int i = 0; i < location.length; i++) {
+			final int[] pos = location[i];
+			if (!grid.inBounds(pos[0], pos[1], pos[2]) || grid.get(pos[0], pos[1], pos[2]) != word.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Copies a cached location so callers cannot modify the cache
+	 * @param location cached location (NOT_FOUND or null for a word that is not in the grid)
+	 * @return copy of the location (or null for a word that is not in the grid)
+	 */
+	private static int[][] copy(int[][] location) {
+		if (location == null || location == NOT_FOUND) return null;
+		final int[][] arr = new int[location.length][];
+		for (int i = 0; i < location.length; i++) arr[i] = location[i].clone();
+		return arr;
+	}
+
+	/**
+	 * Cache key made of a grid's shape and content fingerprint plus the word searched for
+	 */
+	private static class Key {
+		private final long fingerprint;
+		private final int rows, columns, aisles;
+		private final String word;
+
+		Key(CharGrid grid, String word) {
+			this.fingerprint = grid.fingerprint();
+			this.rows = grid.getRows();
+			this.columns = grid.getColumns();
+			this.aisles = grid.getAisles();
+			this.word = word;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(fingerprint)*31+word.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key other = (Key) o;
+			return fingerprint == other.fingerprint && rows == other.rows && columns == other.columns
+				&& aisles == other.aisles && word.equals(other.word);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ * A strategy for finding words in a CharGrid, selectable at runtime with WordSearch3D.setEngine.
+ * Every engine reports the same location for a word as WordSearch3D.searchGrid does:
+ * the match with the lowest starting cell offset, then the lowest index into CharGrid.DIRECTIONS.
+ */
+public interface SearchEngine {
+	/**
+	 * Searches for the specified word in the specified flat grid.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @return list of the (3D) locations of the word's letters (or null if not found)
+	 */
+	int[][] searchGrid(CharGrid grid, String word);
+
+	/**
+	 * Searches for all the words in the specified list in the specified flat grid.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param words the words to search for
+	 * @return a list of lists of locations of the letters in the words
+	 */
+	int[][][] searchForAll(CharGrid grid, String[] words);
+}
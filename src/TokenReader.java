@@ -0,0 +1,154 @@
+import java.io.*;
+
+/**
+ * Reads whitespace-separated integers and single characters from a text file (such as those written by
+ * WordSearch3D.exportGrid and exportLocations) straight out of a byte buffer, without creating a String per token.
+ * Text is decoded as UTF-8, and characters outside the Basic Multilingual Plane are rejected since a grid cell holds one char.
+ * Malformed input is reported as an IOException naming the file, line and column (both counted from 1, columns in bytes).
+ */
+public class TokenReader implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final String name; //used in error messages
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos, limit; //next unread byte and end of valid bytes in buffer
+	private long consumed; //bytes of the file before buffer[0]
+	private int line = 1;
+	private long lineStart; //file position of the current line's first byte
+
+	public TokenReader(String filename) throws IOException {
+		this(new FileInputStream(filename), filename);
+	}
+
+	public TokenReader(InputStream in, String name) {
+		this.in = in;
+		this.name = name;
+	}
+
+	public int getLine() { return this.line; }
+	public int getColumn() { return (int)(consumed+pos-lineStart)+1; }
+
+	/**
+	 * Checks if the next token looks like an integer (starts with a digit or a minus sign)
+	 * @return boolean indicating if nextInt should be called next
+	 */
+	public boolean hasNextInt() throws IOException {
+		skipWhitespace();
+		final int c = peek();
+		return c == '-' || (c >= '0' && c <= '9');
+	}
+
+	/**
+	 * Reads the next token as a decimal integer
+	 * @return value of the token
+	 * @throws IOException if the token is missing, not an integer or out of range
+	 */
+	public int nextInt() throws IOException {
+		skipWhitespace();
+		final int column = getColumn();
+		final boolean negative = peek() == '-';
+		if (negative) pos++;
+		long value = 0;
+		int digits = 0;
+		for (int c = peek(); c >= '0' && c <= '9'; c = peek()) {
+			value = value*10+(c-'0');
+			if (value > (long)Integer.MAX_VALUE+1) throw error(column, "integer out of range");
+			digits++;
+			pos++;
+		}
+		if (digits == 0 || !atDelimiter()) throw error(column, "expected an integer but found "+describe());
+		if (negative) value = -value;
+		if (value > Integer.MAX_VALUE) throw error(column, "integer out of range");
+		return (int)value;
+	}
+
+	/**
+	 * Reads the next token as a single character
+	 * @return the character
+	 * @throws IOException if the token is missing, longer than one character or not valid UTF-8
+	 */
+	public char nextChar() throws IOException {
+		skipWhitespace();
+		final int column = getColumn();
+		final int lead = peek();
+		if (lead < 0) throw error(column, "expected a character but found end of file");
+		pos++;
+		int ch, extra; //decoded value so far and continuation bytes still to come
+		if (lead < 0x80) { ch = lead; extra = 0; }
+		else if (lead >= 0xc2 && lead < 0xe0) { ch = lead & 0x1f; extra = 1; }
+		else if (lead >= 0xe0 && lead < 0xf0) { ch = lead & 0x0f; extra = 2; }
+		else throw error(column, "unsupported or invalid UTF-8 byte 0x"+Integer.toHexString(lead));
+		for (; extra > 0; extra--) {
+			final int c = peek();
+			if ((c & 0xc0) != 0x80) throw error(column, "truncated UTF-8 sequence");
+			ch = (ch << 6) | (c & 0x3f);
+			pos++;
+		}
+		if (!atDelimiter()) throw error(column, "expected a single character but found a longer token");
+		return (char)ch;
+	}
+
+	/**
+	 * Reads the next token and checks it is the specified (ASCII) word
+	 * @param word the word expected
+	 * @throws IOException if the next token is anything else
+	 */
+	public void expect(String word) throws IOException {
+		skipWhitespace();
+		final int column = getColumn();
+		for (int i = 0; i < word.length(); i++, pos++) {
+			if (peek() != word.charAt(i)) throw error(column, "expected \""+word+"\"");
+		}
+		if (!atDelimiter()) throw error(column, "expected \""+word+"\"");
+	}
+
+	/**
+	 * Builds an exception describing malformed input at the current line
+	 * @param column column the offending token starts at
+	 * @param message what is wrong
+	 * @return exception to be thrown
+	 */
+	public IOException error(int column, String message) {
+		return new IOException(name+":"+line+":"+column+": "+message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Looks at the next byte without consuming it, refilling the buffer as needed
+	 * @return the byte (0 to 255), or -1 at the end of the file
+	 */
+	private int peek() throws IOException {
+		if (pos == limit) {
+			consumed += limit;
+			pos = 0;
+			limit = Math.max(in.read(buffer, 0, buffer.length), 0);
+			if (limit == 0) return -1;
+		}
+		return buffer[pos] & 0xff;
+	}
+
+	private void skipWhitespace() throws IOException {
+		for (int c = peek(); c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f'; c = peek()) {
+			pos++;
+			if (c == '\n') {
+				line++;
+				lineStart = consumed+pos;
+			}
+		}
+	}
+
+	private boolean atDelimiter() throws IOException {
+		final int c = peek();
+		return c < 0 || c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	private String describe() throws IOException {
+		final int c = peek();
+		return (c < 0) ? "end of file" : (c < 0x20 || c >= 0x7f) ? "byte 0x"+Integer.toHexString(c) : "'"+(char)c+"'";
+	}
+}
@@ -0,0 +1,186 @@
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over a list of words and their reverses.
+ * Walking each of the 13 line directions of a grid through the automaton once finds every word
+ * in all 26 directions, since a reversed word read along a line is the word read the opposite way.
+ */
+public class WordMatcher {
+	private final int[] lengths; //length of each word (0 for null/empty words, which are never matched)
+	private final int[] charClass; //maps a character to its alphabet index (-1 if it appears in no word)
+	private final int alphabet;
+
+	private int[] next; //node*alphabet+class -> node
+	private int[] fail; //node -> longest proper suffix that is also a node
+	private int[] outputHead; //node -> first pattern ending at node (or -1)
+	private int[] outputLink; //node -> nearest suffix node with patterns (or -1)
+	private final int[] patternNext; //pattern -> next pattern ending at the same node (or -1)
+	private int nodes;
+
+	/**
+	 * Builds the automaton for the specified words
+	 * @param words words to search for (null or empty entries are ignored)
+	 */
+	public WordMatcher(String[] words) {
+		this.lengths = new int[words.length];
+		int maxChar = 0;
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] == null) continue;
+			lengths[i] = words[i].length();
+			for (int j = 0; j < lengths[i]; j++) maxChar = Math.max(maxChar, words[i].charAt(j));
+		}
+
+		this.charClass = new int[maxChar+1];
+		Arrays.fill(charClass, -1);
+		int classes = 0;
+		for (String word : words) {
+			if (word == null) continue;
+			for (int j = 0; j < word.length(); j++) {
+				if (charClass[word.charAt(j)] < 0) charClass[word.charAt(j)] = classes++;
+			}
+		}
+		this.alphabet = Math.max(classes, 1);
+
+		this.patternNext = new int[2*words.length]; //pattern 2i is word i, pattern 2i+1 is word i reversed
+		Arrays.fill(patternNext, -1);
+		this.next = new int[16*alphabet];
+		this.outputHead = new int[16];
+		Arrays.fill(next, -1);
+		Arrays.fill(outputHead, -1);
+		this.nodes = 1; //root
+
+		for (int i = 0; i < words.length; i++) {
+			if (lengths[i] == 0) continue;
+			insert(words[i], false, 2*i);
+			if (lengths[i] > 1) insert(words[i], true, 2*i+1);
+		}
+		link();
+	}
+
+	/**
+	 * Adds a pattern to the trie
+	 * @param word word to add
+	 * @param reversed whether to add the word back to front
+	 * @param pattern id of the pattern
+	 */
+	private void insert(String word, boolean reversed, int pattern) {
+		final int len = word.length();
+		int node = 0;
+		for (int j = 0; j < len; j++) {
+			final int cls = charClass[word.charAt(reversed ? len-1-j : j)];
+			if (next[node*alphabet+cls] < 0) {
+				if (nodes == outputHead.length) grow();
+				next[node*alphabet+cls] = nodes++;
+			}
+			node = next[node*alphabet+cls];
+		}
+		patternNext[pattern] = outputHead[node];
+		outputHead[node] = pattern;
+	}
+
+	/**
+	 * Doubles the capacity of the node arrays
+	 */
+	private void grow() {
+		final int capacity = 2*outputHead.length;
+		final int oldNext = next.length;
+		next = Arrays.copyOf(next, capacity*alphabet);
+		Arrays.fill(next, oldNext, next.length, -1);
+		final int oldHeads = outputHead.length;
+		outputHead = Arrays.copyOf(outputHead, capacity);
+		Arrays.fill(outputHead, oldHeads, capacity, -1);
+	}
+
+	/**
+	 * Computes failure links breadth first and turns the trie into a full transition table
+	 */
+	private void link() {
+		fail = new int[nodes];
+		outputLink = new int[nodes];
+		outputLink[0] = -1;
+		final int[] queue = new int[nodes];
+		int head = 0, tail = 0;
+
+		for (int cls = 0; cls < alphabet; cls++) {
+			final int child = next[cls];
+			if (child < 0) next[cls] = 0; //missing edges from the root loop back to it
+			else {
+				fail[child] = 0;
+				outputLink[child] = -1;
+				queue[tail++] = child;
+			}
+		}
+		while (head < tail) {
+			final int node = queue[head++];
+			for (int cls = 0; cls < alphabet; cls++) {
+				final int child = next[node*alphabet+cls];
+				final int fallback = next[fail[node]*alphabet+cls];
+				if (child < 0) next[node*alphabet+cls] = fallback; //borrow the failure node's edge
+				else {
+					fail[child] = fallback;
+					outputLink[child] = (outputHead[fallback] >= 0) ? fallback : outputLink[fallback];
+					queue[tail++] = child;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the first occurrence of every word in the specified grid, where "first" follows the order of
+	 * WordSearch3D.searchGrid: lowest starting cell offset, then lowest index into CharGrid.DIRECTIONS.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @return for each word, its match encoded by CharGrid.hit (or CharGrid.NO_HIT if not found)
+	 */
+	public long[] findFirst(CharGrid grid) {
+		final long[] best = new long[lengths.length];
+		Arrays.fill(best, CharGrid.NO_HIT);
+		final char[] cells = grid.cells();
+		final int[] next = this.next, charClass = this.charClass, outputHead = this.outputHead, outputLink = this.outputLink;
+		final int alphabet = this.alphabet, classes = charClass.length;
+		final int rows = grid.getRows(), columns = grid.getColumns(), aisles = grid.getAisles();
+		final int directions = CharGrid.DIRECTIONS.length;
+
+		for (int d = directions/2; d < directions; d++) { //second half of DIRECTIONS holds one of each opposite pair
+			final int[] vec = CharGrid.DIRECTIONS[d];
+			final int stride = grid.stride(vec[0], vec[1], vec[2]);
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < columns; c++) {
+					for (int a = 0; a < aisles; a++) {
+						if (grid.inBounds(r-vec[0], c-vec[1], a-vec[2])) continue; //not the start of a line
+						final int steps = grid.lineLength(r, c, a, d);
+
+						int state = 0, cell = grid.offset(r, c, a);
+						for (int i = 0; i < steps; i++, cell += stride) {
+							final char ch = cells[cell];
+							final int cls = (ch < classes) ? charClass[ch] : -1;
+							state = (cls < 0) ? 0 : next[state*alphabet+cls];
+							for (int node = (outputHead[state] >= 0) ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+								for (int p = outputHead[node]; p >= 0; p = patternNext[p]) {
+									report(best, p, cell, stride, d, directions);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Records an occurrence of a pattern if it comes before the word's current best hit
+	 * @param best current best hit of each word
+	 * @param pattern id of the pattern found
+	 * @param end offset of the cell the pattern ended on
+	 * @param stride offset step along the line
+	 * @param dir index of the line direction
+	 * @param directions number of directions
+	 */
+	private void report(long[] best, int pattern, int end, int stride, int dir, int directions) {
+		final int word = pattern/2;
+		final long hit = ((pattern & 1) == 0)
+			? CharGrid.hit(end-(lengths[word]-1)*stride, dir) //forward: starts at the first cell of the match
+			: CharGrid.hit(end, directions-1-dir); //reversed: starts at the last cell, running the opposite way
+		if (hit < best[word]) best[word] = hit;
+	}
+}
@@ -3,12 +3,49 @@ import java.io.*;
 
 /**
  * Implements a 3D word search puzzle program.
+ * With no engine selected, it is itself the built-in SearchEngine, and with no generator selected,
+ * it is itself the built-in (random placement) PuzzleGenerator.
  */
-public class WordSearch3D {
+public class WordSearch3D implements SearchEngine, PuzzleGenerator {
 	public WordSearch3D () {
+		this(new SplittableRandom());
 	}
 
+	public WordSearch3D (long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	public WordSearch3D (SplittableRandom rng) {
+		this.rng = rng; //source of all randomness used in generation
+	}
+
+	public static final String COMPACT_LOCATIONS = "compact"; //header of the compact locations format
+	public static final int LINE_RECORD = 0; //tag of a loaded word kept as {LINE_RECORD, length, row, column, aisle, dx, dy, dz}
+	public static final int LETTERS_RECORD = 1; //tag of a loaded word kept as {LETTERS_RECORD, length, row0, column0, aisle0, row1, ...}
+
 	final int MAX_TRIES = 100;
+	final int MULTI_WORD_THRESHOLD = 32; //word lists at least this long are searched with a single WordMatcher pass
+
+	private final SplittableRandom rng; //not thread-safe; parallel workers each get their own stream from split()
+	private SearchEngine engine; //alternative search engine (null uses the built-in search; must not lead back to this instance)
+
+	public SearchEngine getEngine() { return this.engine; }
+	public void setEngine(SearchEngine engine) { this.engine = engine; }
+	public SplittableRandom getRandom() { return this.rng; }
+
+	/**
+	 * Creates an instance with its own random stream split off this one's, for use on another thread.
+	 * The split streams are reproducible: the same seed and the same sequence of splits give the same puzzles.
+	 * @return new instance with an independent random stream (and no engine or generator selected)
+	 */
+	public WordSearch3D split() {
+		return new WordSearch3D(rng.split());
+	}
+
+	private PuzzleGenerator generator; //alternative generation strategy (null uses the built-in random placement)
+
+	public PuzzleGenerator getGenerator() { return this.generator; }
+	public void setGenerator(PuzzleGenerator generator) { this.generator = generator; }
 	
 	class Position {
 		private int row, column, aisle;
@@ -35,8 +72,6 @@ public class WordSearch3D {
 		public int getColumn() { return this.column; }		
 		public int getAisle() { return this.aisle; }	
 		public void randomize(int maxRow, int maxColumn, int maxAisle) {
-			final Random rng = new Random();
-
 			this.row = rng.nextInt(maxRow);
 			this.column = rng.nextInt(maxColumn);
 			this.aisle = rng.nextInt(maxAisle);
@@ -62,8 +97,6 @@ public class WordSearch3D {
 		public int getY() { return this.y; }
 		public int getZ() { return this.z; }
 		public void randomize() {
-			final Random rng = new Random();
-
 			this.x = rng.nextInt(3)-1;
 			this.y = rng.nextInt(3)-1;
 			this.z = rng.nextInt(3)-1;
@@ -95,6 +128,33 @@ public class WordSearch3D {
 			this.position.randomize(maxRow, maxColumn, maxAisle);
 			this.vector.randomize();
 		}
+
+		/**
+		 * Picks a position and (nonzero) direction at random from only those that keep the word inside the grid,
+		 * all equally likely. A single letter always gets direction 0, the one a search reports for it.
+		 * @param grid grid the word is to be placed in
+		 * @param counts cumulative placements per direction for the word's length, from CharGrid.placementCounts (total must be positive)
+		 */
+		public void randomize(CharGrid grid, long[] counts) {
+			int dir = 0;
+			long pick;
+			if (word.length() == 1) pick = rng.nextLong(counts[0]); //every cell fits every direction, so only the cell matters
+			else {
+				pick = rng.nextLong(counts[counts.length-1]);
+				while (pick >= counts[dir]) dir++; //directions are weighted by how many starts they have
+				if (dir > 0) pick -= counts[dir-1];
+			}
+
+			final int[] box = grid.startBox(dir, word.length());
+			final int columns = box[3]-box[2], aisles = box[5]-box[4];
+			final int[] vec = CharGrid.DIRECTIONS[dir];
+			this.position.row = box[0]+(int)(pick/((long)columns*aisles));
+			this.position.column = box[2]+(int)(pick/aisles%columns);
+			this.position.aisle = box[4]+(int)(pick%aisles);
+			this.vector.x = vec[0];
+			this.vector.y = vec[1];
+			this.vector.z = vec[2];
+		}
 	}
 
 	/**
@@ -105,9 +165,31 @@ public class WordSearch3D {
 	 * @return a list of lists of locations of the letters in the words
 	 */
 	public int[][][] searchForAll (char[][][] grid, String[] words) {
+		return searchForAll(CharGrid.fromArray(grid), words);
+	}
+
+	/**
+	 * Searches for all the words in the specified list in the specified flat grid, using the selected engine if there is one.
+	 * Otherwise long lists are matched all at once by walking every line of the grid through a WordMatcher.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param words the words to search for
+	 * @return a list of lists of locations of the letters in the words
+	 */
+	@Override
+	public int[][][] searchForAll (CharGrid grid, String[] words) {
+		if (engine != null) return engine.searchForAll(grid, words);
 		final int[][][] locations = new int[words.length][][];
+		if (grid == null) return locations;
+		else if (words.length < MULTI_WORD_THRESHOLD) {
+			for (int i = 0; i < words.length; i++) {
+				locations[i] = searchGrid(grid, words[i]);
+			}
+			return locations;
+		}
+
+		final long[] hits = new WordMatcher(words).findFirst(grid);
 		for (int i = 0; i < words.length; i++) {
-			locations[i] = search(grid, words[i]);
+			if (hits[i] != CharGrid.NO_HIT) locations[i] = grid.positions(hits[i], words[i].length());
 		}
 		return locations;
 	}
@@ -123,18 +205,294 @@ public class WordSearch3D {
 	public int[][] search(char[][][] grid, String word) {
 		if (grid == null) return null;
 		else if (word == null || word.isEmpty()) return null;
-		Composite comp;
-		for (int r = 0; r < grid.length; r++) {
-			for (int c = 0; c < grid[r].length; c++) {
-				for (int a = 0; a < grid[r][c].length; a++) {
-					comp = checkAt(grid, new Position(r, c, a), word);
-					if (comp != null) return getCharPositions(comp);
+		return searchGrid(CharGrid.fromArray(grid), word);
+	}
+
+	/**
+	 * Searches for the specified word in the specified flat grid, using the selected engine if there is one.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @return list of the (3D) locations of the word's letters (or null if not found)
+	 */
+	@Override
+	public int[][] searchGrid(CharGrid grid, String word) {
+		if (engine != null) return engine.searchGrid(grid, word);
+		else if (grid == null) return null;
+		else if (word == null || word.isEmpty()) return null;
+		return searchRows(grid, word.toCharArray(), 0, grid.getRows());
+	}
+
+	/**
+	 * Searches for the specified word starting in a slab of rows of the specified flat grid (the word may run outside the slab).
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param letters characters of the (nonempty) word to search for
+	 * @param fromRow first row a match may start in
+	 * @param toRow row after the last row a match may start in
+	 * @return list of the (3D) locations of the word's letters (or null if not found)
+	 */
+	int[][] searchRows(CharGrid grid, char[] letters, int fromRow, int toRow) {
+		final char[] cells = grid.cells();
+		final int[] rowMasks = grid.directionMasks(0, letters.length);
+		final int[] columnMasks = grid.directionMasks(1, letters.length);
+		final int[] aisleMasks = grid.directionMasks(2, letters.length);
+		int offset = grid.offset(fromRow, 0, 0), dir;
+
+		for (int r = fromRow; r < toRow; r++) {
+			for (int c = 0; c < grid.getColumns(); c++) {
+				final int allowed = rowMasks[r] & columnMasks[c];
+				for (int a = 0; a < grid.getAisles(); a++, offset++) {
+					if (cells[offset] != letters[0]) continue; //cannot start here
+					dir = findDirection(grid, offset, letters, allowed & aisleMasks[a]);
+					if (dir >= 0) {
+						final int[] vec = CharGrid.DIRECTIONS[dir];
+						return getCharPositions(r, c, a, vec[0], vec[1], vec[2], letters.length);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Lazily lists every occurrence of the specified word in the specified grid.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @return iterator over Composites holding the Position and Vector of each occurrence (see count for what counts)
+	 */
+	public Iterator<Composite> searchAll(char[][][] grid, String word) {
+		return searchAll(CharGrid.fromArray(grid), word);
+	}
+
+	/**
+	 * Lazily lists every occurrence of the specified word in the specified flat grid, in the order search finds them.
+	 * Use getCharPositions on an occurrence to expand it to coordinates.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @return iterator over Composites holding the Position and Vector of each occurrence (see count for what counts)
+	 */
+	public Iterator<Composite> searchAll(CharGrid grid, String word) {
+		if (grid == null || word == null || word.isEmpty()) return Collections.emptyIterator();
+		return new OccurrenceIterator(grid, word);
+	}
+
+	/**
+	 * Counts the occurrences of the specified word in the specified grid, stopping once the limit is reached.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @param limit number of occurrences after which to stop counting
+	 * @return number of occurrences found, at most limit
+	 */
+	public int count(char[][][] grid, String word, int limit) {
+		return count(CharGrid.fromArray(grid), word, limit);
+	}
+
+	/**
+	 * Counts the occurrences of the specified word in the specified flat grid, stopping once the limit is reached.
+	 * A single letter occurs once per cell holding it, and a palindrome read both ways along the same cells occurs once.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @param limit number of occurrences after which to stop counting
+	 * @return number of occurrences found, at most limit
+	 */
+	public int count(CharGrid grid, String word, int limit) {
+		if (grid == null || word == null || word.isEmpty()) return 0;
+		final char[] letters = word.toCharArray();
+		final boolean palindrome = isPalindrome(letters);
+		final char[] cells = grid.cells();
+		final int[] rowMasks = grid.directionMasks(0, letters.length);
+		final int[] columnMasks = grid.directionMasks(1, letters.length);
+		final int[] aisleMasks = grid.directionMasks(2, letters.length);
+		int offset = 0, found = 0;
+
+		for (int r = 0; r < grid.getRows(); r++) {
+			for (int c = 0; c < grid.getColumns(); c++) {
+				for (int a = 0; a < grid.getAisles() && found < limit; a++, offset++) {
+					if (cells[offset] != letters[0]) continue; //cannot start here
+					final int allowed = rowMasks[r] & columnMasks[c] & aisleMasks[a];
+					for (int d = findDirection(grid, offset, letters, allowed); d >= 0 && found < limit; d = findDirection(grid, offset, letters, allowed & (-1 << (d+1)))) {
+						if (countsAsOccurrence(grid, letters.length, palindrome, d)) found++;
+						if (letters.length == 1) break; //direction is meaningless for a single letter
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Checks if a match in the specified direction is a distinct occurrence rather than a palindrome read backwards
+	 * @param grid the grid the match was found in
+	 * @param len number of characters in the word
+	 * @param palindrome whether the word reads the same backwards
+	 * @param dir index into CharGrid.DIRECTIONS of the direction of the match
+	 * @return boolean indicating if the match should be reported
+	 */
+	private boolean countsAsOccurrence(CharGrid grid, int len, boolean palindrome, int dir) {
+		if (!palindrome || len == 1) return true;
+		final int[] vec = CharGrid.DIRECTIONS[dir];
+		return grid.stride(vec[0], vec[1], vec[2]) > 0; //keep the reading that starts from the lower cell
+	}
+
+	/**
+	 * Checks if the specified word reads the same backwards
+	 * @param letters characters of the word
+	 * @return boolean indicating if the word is a palindrome
+	 */
+	private boolean isPalindrome(char[] letters) {
+		for (int i = 0, j = letters.length-1; i < j; i++, j--) {
+			if (letters[i] != letters[j]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Walks the grid one occurrence at a time for searchAll
+	 */
+	class OccurrenceIterator implements Iterator<Composite> {
+		private final CharGrid grid;
+		private final String word;
+		private final char[] letters;
+		private final boolean palindrome;
+		private int offset, dir; //next cell and direction to try
+		private Composite next;
+
+		public OccurrenceIterator(CharGrid grid, String word) {
+			this.grid = grid;
+			this.word = word;
+			this.letters = word.toCharArray();
+			this.palindrome = isPalindrome(letters);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) advance();
+			return next != null;
+		}
+
+		@Override
+		public Composite next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			final Composite comp = next;
+			next = null;
+			return comp;
+		}
+
+		private void advance() {
+			for (; offset < grid.size(); offset++, dir = 0) {
+				if (grid.get(offset) != letters[0]) continue; //cannot start here
+				final int r = grid.rowOf(offset), c = grid.columnOf(offset), a = grid.aisleOf(offset);
+				final int allowed = grid.allowedDirections(r, c, a, letters.length);
+				for (int d = findDirection(grid, offset, letters, allowed & (-1 << dir)); d >= 0; d = findDirection(grid, offset, letters, allowed & (-1 << (d+1)))) {
+					if (!countsAsOccurrence(grid, letters.length, palindrome, d)) continue;
+					dir = (letters.length == 1) ? CharGrid.DIRECTIONS.length : d+1; //a single letter occurs once per cell
+					final int[] vec = CharGrid.DIRECTIONS[d];
+					next = new Composite(new Position(r, c, a), new Vector(vec[0], vec[1], vec[2]), word);
+					return;
 				}
 			}
 		}
+	}
+
+	/**
+	 * Searches for the specified word in the grid of the specified index, only trying cells that hold the word's first letter.
+	 * @param index index of the grid of characters comprising the word search puzzle
+	 * @param word the word to search for
+	 * @return list of the (3D) locations of the word's letters (or null if not found)
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	public int[][] searchGrid(GridIndex index, String word) {
+		if (index == null) return null;
+		else if (word == null || word.isEmpty()) return null;
+		final CharGrid grid = index.getGrid();
+		final char[] letters = word.toCharArray();
+		final int[] offsets = index.offsets();
+		int offset, r, c, a, dir;
+
+		for (int i = index.first(letters[0]); i < index.end(letters[0]); i++) {
+			offset = offsets[i];
+			r = grid.rowOf(offset);
+			c = grid.columnOf(offset);
+			a = grid.aisleOf(offset);
+			dir = findDirection(grid, offset, letters, grid.allowedDirections(r, c, a, letters.length));
+			if (dir >= 0) {
+				final int[] vec = CharGrid.DIRECTIONS[dir];
+				return getCharPositions(r, c, a, vec[0], vec[1], vec[2], letters.length);
+			}
+		}
 		return null;
 	}
 
+	/**
+	 * Searches for all the words in the specified list in the grid of the specified index.
+	 * @param index index of the grid of characters comprising the word search puzzle
+	 * @param words the words to search for
+	 * @return a list of lists of locations of the letters in the words
+	 * @throws IllegalStateException if the grid changed since the index was built
+	 */
+	public int[][][] searchForAll (GridIndex index, String[] words) {
+		final int[][][] locations = new int[words.length][][];
+		for (int i = 0; i < words.length; i++) {
+			locations[i] = searchGrid(index, words[i]);
+		}
+		return locations;
+	}
+
+	/**
+	 * Finds the first direction in which the specified word runs from the specified cell
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param row row index of the first character
+	 * @param column column index of the first character
+	 * @param aisle aisle index of the first character
+	 * @param letters characters of the word to search for
+	 * @return index into CharGrid.DIRECTIONS of the direction the word runs in (or -1 if none)
+	 */
+	int findDirection(CharGrid grid, int row, int column, int aisle, char[] letters) {
+		return findDirection(grid, row, column, aisle, letters, 0);
+	}
+
+	/**
+	 * Finds the first direction at or after the specified one in which the specified word runs from the specified cell
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param row row index of the first character
+	 * @param column column index of the first character
+	 * @param aisle aisle index of the first character
+	 * @param letters characters of the word to search for
+	 * @param fromDir index into CharGrid.DIRECTIONS of the first direction to try
+	 * @return index into CharGrid.DIRECTIONS of the direction the word runs in (or -1 if none)
+	 */
+	int findDirection(CharGrid grid, int row, int column, int aisle, char[] letters, int fromDir) {
+		if (letters.length == 0) return (fromDir < CharGrid.DIRECTIONS.length) ? fromDir : -1; //empty word is trivially present
+		else if (fromDir >= CharGrid.DIRECTIONS.length || !grid.inBounds(row, column, aisle)) return -1;
+		else if (grid.get(row, column, aisle) != letters[0]) return -1;
+		final int allowed = grid.allowedDirections(row, column, aisle, letters.length);
+		return findDirection(grid, grid.offset(row, column, aisle), letters, allowed & (-1 << fromDir));
+	}
+
+	/**
+	 * Finds the first of the allowed directions in which the specified word runs from the specified cell.
+	 * The cell must hold the word's first letter, and every allowed direction must keep the word inside the grid,
+	 * so the letters are compared without any bounds checks.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param offset offset of the cell holding the first character
+	 * @param letters characters of the word to search for
+	 * @param allowed bitmask of directions to try (bit d for CharGrid.DIRECTIONS[d]), from CharGrid.allowedDirections
+	 * @return index into CharGrid.DIRECTIONS of the direction the word runs in (or -1 if none)
+	 */
+	int findDirection(CharGrid grid, int offset, char[] letters, int allowed) {
+		final char[] cells = grid.cells();
+		for (int remaining = allowed; remaining != 0; remaining &= remaining-1) {
+			final int d = Integer.numberOfTrailingZeros(remaining);
+			final int stride = grid.stride(d);
+			int i = 1, cell = offset+stride;
+			while (i < letters.length && cells[cell] == letters[i]) {
+				i++;
+				cell += stride;
+			}
+			if (i == letters.length) return d;
+		}
+		return -1;
+	}
+
 	/**
 	 * Checks if the specified word is at specified position in specified grid
 	 * @param grid the grid of characters comprising the word search puzzle
@@ -143,20 +501,29 @@ public class WordSearch3D {
 	 * @return Composite with Position of first character (if word found), Vector (direction), and word 
 	 */
 	public Composite checkAt(char[][][] grid, Position pos, String word) {
-		Vector vec;
-		for (int x = -1; x <= 1; x++) {
-			for (int y = -1; y <= 1; y++) {
-				for (int z = -1; z <= 1; z++) {
-					vec = new Vector(x, y, z);
-					if (checkLine(grid, pos, vec, word)) return new Composite(pos, vec, word);
-				}
-			}
+		for (int[] vec : CharGrid.DIRECTIONS) { //same order as the flat grid search, so both report the same direction
+			final Vector dir = new Vector(vec[0], vec[1], vec[2]);
+			if (checkLine(grid, pos, dir, word)) return new Composite(pos, dir, word);
 		}
 		return null;
 	}
 
 	/**
-	 * Checks if the specified word is at given position in direction in provded grid (recursive)
+	 * Checks if the specified word is at specified position in specified flat grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param pos the position of the character we're checking
+	 * @param word the word to search for
+	 * @return Composite with Position of first character (if word found), Vector (direction), and word 
+	 */
+	public Composite checkAt(CharGrid grid, Position pos, String word) {
+		final int dir = findDirection(grid, pos.getRow(), pos.getColumn(), pos.getAisle(), word.toCharArray());
+		if (dir < 0) return null;
+		final int[] vec = CharGrid.DIRECTIONS[dir];
+		return new Composite(pos, new Vector(vec[0], vec[1], vec[2]), word);
+	}
+
+	/**
+	 * Checks if the specified word is at given position in direction in provded grid
 	 * @param grid the grid of characters comprising the word search puzzle
 	 * @param pos the position of the character we're checking
 	 * @param vec the direction we are checking in
@@ -164,20 +531,54 @@ public class WordSearch3D {
 	 * @return Boolean indicating if the word was found
 	 */
 	public Boolean checkLine(char[][][] grid, Position pos, Vector vec, String word) {
-		final int row = pos.getRow();
-		final int column = pos.getColumn();
-		final int aisle = pos.getAisle();
-		
-		if (word.isEmpty()) return true;
+		int row = pos.getRow(), column = pos.getColumn(), aisle = pos.getAisle();
+		for (int i = 0; i < word.length(); i++, row += vec.getX(), column += vec.getY(), aisle += vec.getZ()) {
+			if (!inBounds(grid, row, column, aisle)) return false; //line runs off the grid
+			else if (grid[row][column][aisle] != word.charAt(i)) return false;
+		}
+		return true; //empty word is trivially present
+	}
+
+	/**
+	 * Checks if the specified word is at given position in direction in provded flat grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param pos the position of the character we're checking
+	 * @param vec the direction we are checking in
+	 * @param word the word to search for
+	 * @return Boolean indicating if the word was found
+	 */
+	public Boolean checkLine(CharGrid grid, Position pos, Vector vec, String word) {
+		return checkLine(grid, pos.getRow(), pos.getColumn(), pos.getAisle(), vec.getX(), vec.getY(), vec.getZ(), word.toCharArray());
+	}
+
+	/**
+	 * Checks if the specified word is at given coordinates in given direction in provided flat grid.
+	 * Only the two ends of the line are bounds checked; the letters in between are compared by stepping the cell offset.
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param row row index of the first character
+	 * @param column column index of the first character
+	 * @param aisle aisle index of the first character
+	 * @param dx movement on x per character
+	 * @param dy movement on y per character
+	 * @param dz movement on z per character
+	 * @param letters characters of the word to search for
+	 * @return boolean indicating if the word was found
+	 */
+	public boolean checkLine(CharGrid grid, int row, int column, int aisle, int dx, int dy, int dz, char[] letters) {
+		final int last = letters.length-1;
+		if (last < 0) return true; //empty word is trivially present
 		else if (
-			row < 0 || row >= grid.length 
-			|| column < 0 || column >= grid[0].length 
-			|| aisle < 0 || aisle >= grid[0][0].length
-			) return false;
-		else if (getCharAtPos(grid, pos) == word.charAt(0)) {
-			return checkLine(grid, new Position(pos, vec), vec, word.substring(1));
+			!grid.inBounds(row, column, aisle)
+			|| !grid.inBounds(row+dx*last, column+dy*last, aisle+dz*last)
+			) return false; //line runs off the grid
+
+		final char[] cells = grid.cells();
+		final int stride = grid.stride(dx, dy, dz);
+		int offset = grid.offset(row, column, aisle);
+		for (int i = 0; i <= last; i++, offset += stride) {
+			if (cells[offset] != letters[i]) return false;
 		}
-		return false;
+		return true;
 	}
 
 	/**
@@ -190,6 +591,16 @@ public class WordSearch3D {
 		return grid[pos.getRow()][pos.getColumn()][pos.getAisle()];
 	}
 
+	/**
+	 * Gets the character at provided position in flat grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param pos the position to pull the character from
+	 * @return character at position
+	 */
+	public char getCharAtPos(CharGrid grid, Position pos) {
+		return grid.get(pos.getRow(), pos.getColumn(), pos.getAisle());
+	}
+
 	/**
 	 * Produces array representing the positions of characters of word in a 3Dimensional array
 	 * @param comp Composite containing Position of word, direction (Vector) of word, and the word
@@ -198,16 +609,25 @@ public class WordSearch3D {
 	public int[][] getCharPositions(Composite comp) {
 		final Position pos = comp.getPosition();
 		final Vector vec = comp.getVector();
-		final int len = comp.getWord().length();
+		return getCharPositions(pos.getRow(), pos.getColumn(), pos.getAisle(), vec.getX(), vec.getY(), vec.getZ(), comp.getWord().length());
+	}
 
-		int[][] arr = new int[len][3];
+	/**
+	 * Produces array representing the positions of characters of a line in a 3Dimensional array
+	 * @param row row index of the first character
+	 * @param column column index of the first character
+	 * @param aisle aisle index of the first character
+	 * @param dx movement on x per character
+	 * @param dy movement on y per character
+	 * @param dz movement on z per character
+	 * @param len number of characters in the line
+	 * @return two-dimensional array of integers representing positions of each character in the line
+	 */
+	public int[][] getCharPositions(int row, int column, int aisle, int dx, int dy, int dz, int len) {
+		int[][] arr = new int[len][];
 
 		for (int i = 0; i < len; i++) {
-			arr[i] = new int[]{
-				pos.getRow()+vec.getX()*i, 
-				pos.getColumn()+vec.getY()*i, 
-				pos.getAisle()+vec.getZ()*i
-			};
+			arr[i] = new int[]{row+dx*i, column+dy*i, aisle+dz*i};
 		}
 		return arr;
 	}
@@ -223,23 +643,100 @@ public class WordSearch3D {
 	 * no satisfying grid could be found or invalid size provided.
 	 */
 	public char[][][] make(String[] words, int sizeX, int sizeY, int sizeZ) {
+		final CharGrid grid = makeGrid(words, sizeX, sizeY, sizeZ);
+		return (grid == null) ? null : grid.toArray();
+	}
+
+	/**
+	 * Tries to create a flat word search puzzle of the specified size with the specified
+	 * list of words, using the selected generator if there is one.
+	 * @param words the list of words to embed in the grid
+	 * @param sizeX size of the grid along first dimension
+	 * @param sizeY size of the grid along second dimension
+	 * @param sizeZ size of the grid along third dimension
+	 * @return a flat grid if successful that contains all the words, or null if
+	 * no satisfying grid could be found or invalid size provided.
+	 */
+	public CharGrid makeGrid(String[] words, int sizeX, int sizeY, int sizeZ) {
 		final String[] validWords = purgeInvalidWords(words); //purge invalid inputs (empty strings or null)
 		if (
 			(double)sizeX > Integer.MAX_VALUE || (double)sizeX < Integer.MIN_VALUE || sizeX < 0 
 			|| (double)sizeY > Integer.MAX_VALUE || (double)sizeY < Integer.MIN_VALUE || sizeY < 0
 			|| (double)sizeZ > Integer.MAX_VALUE || (double)sizeZ < Integer.MIN_VALUE || sizeZ < 0
 			) return null; //return null if invalid size provided
-		else if (validWords == null || validWords.length == 0) return makeRandom(sizeX, sizeY, sizeZ); //return random grid if null/empty list of words provided 
+		else if (validWords == null || validWords.length == 0) return makeRandomGrid(sizeX, sizeY, sizeZ); //return random grid if null/empty list of words provided 
 		else if (getLongest(validWords) > Math.max(sizeX, Math.max(sizeY, sizeZ))) return null; //return null if no possible fit for largest word
 		
-		final char[][][] grid = makeRandom(sizeX, sizeY, sizeZ);
-		char[][][] temp;
+		final PuzzleBuilder builder = new PuzzleBuilder(this, makeRandomGrid(sizeX, sizeY, sizeZ));
+		final PuzzleGenerator strategy = (generator != null) ? generator : this;
+		return strategy.generate(builder, validWords) ? builder.getGrid() : null;
+	}
+
+	/**
+	 * Tries to create a flat word search puzzle of the specified size with the specified list of words,
+	 * stopping at a deadline. Attempts are made with the built-in random placement; each one places every word it can,
+	 * and if none places them all, the attempt that placed the most is returned as a partial result.
+	 * @param words the list of words to embed in the grid
+	 * @param sizeX size of the grid along first dimension
+	 * @param sizeY size of the grid along second dimension
+	 * @param sizeZ size of the grid along third dimension
+	 * @param deadline time budget or cancellation token to stop at (null for none)
+	 * @return the grid and the words placed in it (complete unless the deadline passed or MAX_TRIES attempts all fell short),
+	 * a random grid holding no words if the list is null, or null if invalid size provided
+	 */
+	public GenerationResult make(String[] words, int sizeX, int sizeY, int sizeZ, Deadline deadline) {
+		final String[] validWords = purgeInvalidWords(words); //purge invalid inputs (empty strings or null)
+		if (sizeX < 0 || sizeY < 0 || sizeZ < 0) return null; //return null if invalid size provided
+		else if (validWords == null) return new GenerationResult(makeRandomGrid(sizeX, sizeY, sizeZ), new String[0], new int[0][][]);
+		if (deadline == null) deadline = Deadline.none();
+
+		final PuzzleBuilder builder = new PuzzleBuilder(this, makeRandomGrid(sizeX, sizeY, sizeZ));
+		final int mark = builder.mark();
+		int[] best = new int[0]; //indices of the words placed by the best attempt so far, in placement order
+		long[] bestHits = new long[0]; //and where it placed them
+		boolean complete = false;
 
-		for (int i = 0; i < MAX_TRIES; i++) { //attempt MAX_TRIES times to build grid
-			temp = tryMake(grid, validWords);
-			if (temp != null) return temp; //grid built (tryMake succeeded)
+		for (int i = 0; i < MAX_TRIES && !deadline.isExpired(); i++) {
+			final int[] placed = new int[validWords.length];
+			int count = 0;
+			for (int j = 0; j < validWords.length && !deadline.isExpired(); j++) {
+				if (tryWord(builder, validWords[j], deadline)) placed[count++] = j; //skip words that do not fit and carry on
+			}
+			if (count > best.length) { //remember the placements rather than copying the grid
+				best = Arrays.copyOf(placed, count);
+				bestHits = new long[count];
+				for (int k = 0; k < count; k++) bestHits[k] = builder.getHit(k);
+			}
+			if (count == validWords.length) { //all placed
+				complete = true;
+				break;
+			}
+			builder.rollback(mark);
+		}
+
+		if (!complete) { //replay the best attempt; same letters underneath, so every placement fits
+			builder.rollback(mark);
+			for (int k = 0; k < best.length; k++) {
+				builder.place(validWords[best[k]], (int)(bestHits[k]/CharGrid.DIRECTIONS.length), (int)(bestHits[k]%CharGrid.DIRECTIONS.length));
+			}
 		}
-		return null; //return null if unable to build grid in fewer than MAX_TRIES attempts
+		final int[][][] locations = new int[validWords.length][][];
+		for (int k = 0; k < best.length; k++) locations[best[k]] = builder.getLocation(k);
+		return new GenerationResult(builder.getGrid(), validWords, locations);
+	}
+
+	/**
+	 * Places all the specified words in a puzzle under construction at random, making up to MAX_TRIES attempts
+	 * @param builder puzzle under construction
+	 * @param words the words to place
+	 * @return boolean indicating if every word was placed
+	 */
+	@Override
+	public boolean generate(PuzzleBuilder builder, String[] words) {
+		for (int i = 0; i < MAX_TRIES; i++) { //attempt MAX_TRIES times to build grid, on one working grid rolled back after each failure
+			if (tryMake(builder, words)) return true; //grid built (tryMake succeeded)
+		}
+		return false; //unable to build grid in fewer than MAX_TRIES attempts
 	}
 
 	/**
@@ -250,15 +747,21 @@ public class WordSearch3D {
 	 * @return grid with specified rows, columns, and aisles
 	 */
 	public char[][][] makeRandom(int sizeX, int sizeY, int sizeZ) {
-		final Random rng = new Random();
-		char[][][] grid = new char[sizeX][sizeY][sizeZ];
+		return makeRandomGrid(sizeX, sizeY, sizeZ).toArray();
+	}
 
-		for (int r = 0; r < sizeX; r++) {
-			for (int c = 0; c < sizeY; c++) {
-				for (int a = 0; a < sizeZ; a++) {
-					grid[r][c][a] = (char)(rng.nextInt(26)+'a');
-				}
-			}
+	/**
+	 * Generates a flat grid with random characters
+	 * @param sizeX number of rows of grid
+	 * @param sizeY number of columns of grid
+	 * @param sizeZ number of aisles of grid
+	 * @return flat grid with specified rows, columns, and aisles
+	 */
+	public CharGrid makeRandomGrid(int sizeX, int sizeY, int sizeZ) {
+		final CharGrid grid = new CharGrid(sizeX, sizeY, sizeZ);
+
+		for (int i = 0; i < grid.size(); i++) {
+			grid.set(i, (char)(rng.nextInt(26)+'a'));
 		}
 		return grid;
 	}
@@ -283,13 +786,49 @@ public class WordSearch3D {
 	 * @return 3D puzzle containing provided words (or null if unable to insert a word))
 	 */
 	public char[][][] tryMake(char[][][] grid, String[] words) {
-		char[][][] temp = duplicateGrid(grid);
+		final CharGrid temp = tryMake(CharGrid.fromArray(grid), words);
+		return (temp == null) ? null : temp.toArray();
+	}
+
+	/**
+	 * Attempt to build a flat puzzle with provided words and base grid
+	 * @param grid base grid to be inserted into
+	 * @param words list of words to be inserted
+	 * @return flat puzzle containing provided words (or null if unable to insert a word))
+	 */
+	public CharGrid tryMake(CharGrid grid, String[] words) {
+		final PuzzleBuilder builder = new PuzzleBuilder(this, grid.copy());
+		return tryMake(builder, words) ? builder.getGrid() : null;
+	}
+
+	/**
+	 * Attempt to insert provided words into a puzzle under construction, rolling it back to how it was if any word does not fit
+	 * @param builder puzzle under construction
+	 * @param words list of words to be inserted
+	 * @return boolean indicating if all words were inserted
+	 */
+	public boolean tryMake(PuzzleBuilder builder, String[] words) {
+		return tryMake(builder, words, null);
+	}
+
+	/**
+	 * Attempt to insert provided words into a puzzle under construction before a deadline,
+	 * rolling it back to how it was if any word does not fit in time
+	 * @param builder puzzle under construction
+	 * @param words list of words to be inserted
+	 * @param deadline deadline to stop at (or null for none)
+	 * @return boolean indicating if all words were inserted
+	 */
+	public boolean tryMake(PuzzleBuilder builder, String[] words, Deadline deadline) {
+		final int mark = builder.mark();
 
 		for (int i = 0; i < words.length; i++) {
-			temp = tryWord(temp, words[i], Arrays.copyOfRange(words, 0, i+1)); //attempt to insert word into puzzle without altering previous words
-			if (temp == null) return null; //fails to insert word (exceeded MAX_TRIES attempts)
+			if (!tryWord(builder, words[i], deadline)) { //fails to insert word (exceeded MAX_TRIES attempts)
+				builder.rollback(mark); //undo this attempt's words in place instead of starting from a fresh copy
+				return false;
+			}
 		}
-		return temp; //succeeded in inserting all words
+		return true; //succeeded in inserting all words
 	}
 
 	/**
@@ -300,18 +839,79 @@ public class WordSearch3D {
 	 * @return 3D puzzle containing all words in upTo (or null if unable to insert word)
 	 */
 	public char[][][] tryWord(char[][][] grid, String word, String[] upTo) {
+		final CharGrid temp = tryWord(CharGrid.fromArray(grid), word, upTo);
+		return (temp == null) ? null : temp.toArray();
+	}
+
+	/**
+	 * Tries up to MAX_TRIES many times to insert provided word into a random spot of a flat puzzle containing some provided words
+	 * @param grid base puzzle 
+	 * @param word word to be inserted
+	 * @param upTo words that should already be in the puzzle plus provided word to be inserted
+	 * @return flat puzzle containing all words in upTo (or null if unable to insert word)
+	 */
+	public CharGrid tryWord(CharGrid grid, String word, String[] upTo) {
 		if (word.isEmpty()) return grid;
 		Composite comp = new Composite(word);
-		char[][][] temp;
-		
+		final CharGrid temp = grid.copy(); //one scratch copy, put back after every failed try instead of copied again
+		final char[] saved = new char[word.length()];
+		final int last = word.length()-1;
+
 		for (int i = 0; i < MAX_TRIES; i++) {
-			comp.randomize(grid.length, grid[0].length, grid[0][0].length);
-			temp = placeWord(grid, comp);
-			if (temp != null && hasAll(temp, upTo)) return temp; //succeeded in inserting word and other words still present
+			comp.randomize(grid.getRows(), grid.getColumns(), grid.getAisles());
+			final Position pos = comp.getPosition();
+			final Vector vec = comp.getVector();
+			if (
+				!temp.inBounds(pos.getRow(), pos.getColumn(), pos.getAisle())
+				|| !temp.inBounds(pos.getRow()+vec.getX()*last, pos.getColumn()+vec.getY()*last, pos.getAisle()+vec.getZ()*last)
+				) continue; //would go out of bounds; not valid
+
+			final int start = temp.offset(pos.getRow(), pos.getColumn(), pos.getAisle());
+			final int stride = temp.stride(vec.getX(), vec.getY(), vec.getZ());
+			for (int j = 0, cell = start; j <= last; j++, cell += stride) {
+				saved[j] = temp.get(cell);
+				temp.set(cell, word.charAt(j));
+			}
+			if (hasAll(temp, upTo)) return temp; //succeeded in inserting word and other words still present
+			for (int j = last, cell = start+stride*last; j >= 0; j--, cell -= stride) temp.set(cell, saved[j]); //undo in reverse so self-overlapping lines restore correctly
 		}
 		return null; //fails to insert word after MAX_TRIES attempts
 	}
 
+	/**
+	 * Tries up to MAX_TRIES many times to insert provided word into a random in-bounds spot of a puzzle under construction,
+	 * without overwriting any word already placed in it
+	 * @param builder puzzle under construction
+	 * @param word word to be inserted
+	 * @return boolean indicating if the word was inserted
+	 */
+	public boolean tryWord(PuzzleBuilder builder, String word) {
+		return tryWord(builder, word, null);
+	}
+
+	/**
+	 * Tries up to MAX_TRIES many times, stopping early at a deadline, to insert provided word into a random in-bounds spot
+	 * of a puzzle under construction, without overwriting any word already placed in it
+	 * @param builder puzzle under construction
+	 * @param word word to be inserted
+	 * @param deadline deadline to stop at (or null for none)
+	 * @return boolean indicating if the word was inserted
+	 */
+	public boolean tryWord(PuzzleBuilder builder, String word, Deadline deadline) {
+		if (word.isEmpty()) return true;
+		final CharGrid grid = builder.getGrid();
+		final Composite comp = new Composite(word);
+		final long[] counts = grid.placementCounts(word.length()); //only sample placements that fit
+		if (counts[counts.length-1] == 0) return false; //word fits nowhere in the grid
+
+		for (int i = 0; i < MAX_TRIES; i++) {
+			if (deadline != null && deadline.isExpired()) return false; //out of time
+			comp.randomize(grid, counts);
+			if (placeWord(builder, comp)) return true; //succeeded in inserting word without touching other words
+		}
+		return false; //fails to insert word after MAX_TRIES attempts
+	}
+
 	/**
 	 * Attempt to insert word into 3D puzzle at specified position and direction
 	 * @param grid puzzle to insert word into
@@ -322,8 +922,41 @@ public class WordSearch3D {
 		final String word = comp.getWord();
 		final Position pos = comp.getPosition();
 		final Vector vec = comp.getVector();
+		for (int i = 0; i < word.length(); i++) {
+			if (!inBounds(grid, pos.getRow()+vec.getX()*i, pos.getColumn()+vec.getY()*i, pos.getAisle()+vec.getZ()*i)) return null; //would go out of bounds; not valid
+		}
 
 		char[][][] temp = duplicateGrid(grid);
+		for (int i = 0; i < word.length(); i++) {
+			temp[pos.getRow()+vec.getX()*i][pos.getColumn()+vec.getY()*i][pos.getAisle()+vec.getZ()*i] = word.charAt(i);
+		}
+		return temp; //word inserted successfully
+	}
+
+	/**
+	 * Checks if the specified coordinates lie inside the provided grid
+	 * @param grid the grid of characters comprising the word search puzzle
+	 * @param row row index
+	 * @param column column index
+	 * @param aisle aisle index
+	 * @return boolean indicating if the cell exists
+	 */
+	private static boolean inBounds(char[][][] grid, int row, int column, int aisle) {
+		return row >= 0 && row < grid.length && column >= 0 && column < grid[row].length && aisle >= 0 && aisle < grid[row][column].length;
+	}
+
+	/**
+	 * Attempt to insert word into flat puzzle at specified position and direction
+	 * @param grid puzzle to insert word into
+	 * @param comp Composite containing word, position to insert at, and direction to insert in
+	 * @return flat puzzle now containing word (or null if attempting to insert outside of puzzle)
+	 */
+	public CharGrid placeWord(CharGrid grid, Composite comp) {
+		final String word = comp.getWord();
+		final Position pos = comp.getPosition();
+		final Vector vec = comp.getVector();
+
+		CharGrid temp = grid.copy();
 		int row, column, aisle;
 
 		for (int i = 0; i < word.length(); i++) {
@@ -331,16 +964,32 @@ public class WordSearch3D {
 			column = pos.getColumn()+vec.getY()*i;
 			aisle = pos.getAisle()+vec.getZ()*i;
 			
-			if (
-				row < 0 || row >= temp.length 
-				|| column < 0 || column >= temp[0].length 
-				|| aisle < 0 || aisle >= temp[0][0].length
-				) return null; //would go out of bounds; not valid
-			temp[row][column][aisle] = word.charAt(i);
+			if (!temp.inBounds(row, column, aisle)) return null; //would go out of bounds; not valid
+			temp.set(row, column, aisle, word.charAt(i));
 		}
 		return temp; //word inserted successfully
 	}
 
+	/**
+	 * Attempt to insert word into a puzzle under construction at specified position and direction.
+	 * The word may share letters with words already placed but may not overwrite any of them.
+	 * @param builder puzzle under construction
+	 * @param comp Composite containing word, position to insert at, and direction to insert in
+	 * @return boolean indicating if the word was inserted (false if outside of puzzle or it would overwrite a placed word)
+	 */
+	public boolean placeWord(PuzzleBuilder builder, Composite comp) {
+		final CharGrid grid = builder.getGrid();
+		final Position pos = comp.getPosition();
+		final Vector vec = comp.getVector();
+		int dir = CharGrid.direction(vec.getX(), vec.getY(), vec.getZ());
+
+		if (dir < 0 && comp.getWord().length() > 1) return false; //zero vector would stack every letter in one cell
+		else if (dir < 0) dir = 0; //a single letter runs in any direction
+		if (!grid.inBounds(pos.getRow(), pos.getColumn(), pos.getAisle())) return false;
+		final int offset = grid.offset(pos.getRow(), pos.getColumn(), pos.getAisle());
+		return builder.canPlace(comp.getWord(), offset, dir) && builder.place(comp.getWord(), offset, dir); //checked against the occupancy map, so place never has to look for overwritten words
+	}
+
 	/**
 	 * Produces a duplicate 3D char array as the input in order to avoid aliasing problems
 	 * @param grid 3D char array to be duplicated
@@ -350,9 +999,7 @@ public class WordSearch3D {
 		char[][][] temp = new char[grid.length][grid[0].length][grid[0][0].length];
 		for (int r = 0; r < temp.length; r++) {
 			for (int c = 0; c < temp[0].length; c++) {
-				for (int a = 0; a < temp[0][0].length; a++) {
-					temp[r][c][a] = grid[r][c][a];
-				}
+				System.arraycopy(grid[r][c], 0, temp[r][c], 0, temp[0][0].length);
 			}
 		}
 		return temp;
@@ -365,6 +1012,16 @@ public class WordSearch3D {
 	 * @return Boolean representing if all words were found
 	 */
 	public Boolean hasAll(char[][][] grid, String[] words) {
+		return hasAll(CharGrid.fromArray(grid), words);
+	}
+
+	/**
+	 * checks if the provided flat puzzle has all of the provided words
+	 * @param grid flat puzzle to be searched
+	 * @param words words to look for in the puzzle
+	 * @return Boolean representing if all words were found
+	 */
+	public Boolean hasAll(CharGrid grid, String[] words) {
 		final int[][][] locations = searchForAll(grid, words);
 		for (int[][] loc : locations) if (loc == null) return false; //any word not found
 		return true; //all words found
@@ -390,6 +1047,20 @@ public class WordSearch3D {
 	 * @param filename what to name the exported file.
 	 */
 	public static void exportLocations(int[][][] locations, String filename) {
+		try {
+			writeLocations(locations, filename);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes to a file the list of lists of 3D coordinates, in the format of exportLocations, reporting any failure.
+	 * @param locations a list (for all the words) of lists (for the letters of each word) of 3D coordinates.
+	 * @param filename what to name the written file.
+	 * @throws IOException if the file cannot be created or written
+	 */
+	public static void writeLocations(int[][][] locations, String filename) throws IOException {
 		// First determine how many non-null locations we have
 		int numLocations = 0;
 		for (int i = 0; i < locations.length; i++) {
@@ -414,9 +1085,140 @@ public class WordSearch3D {
 					pw.print('\n');
 				}
 			}
-			pw.close();
-		} catch (FileNotFoundException fnfe) {
-			fnfe.printStackTrace();
+			if (pw.checkError()) throw new IOException("could not write "+filename);
+		}
+	}
+
+	/**
+	 * Exports to a file the list of word locations in the compact format: after a "compact" header and the number of words,
+	 * one line per word holding its length, the coordinates of its first letter and its direction, rather than the coordinates
+	 * of every letter. loadLocations reads it back.
+	 * @param locations a list (for all the words) of lists (for the letters of each word) of 3D coordinates, each a straight line
+	 * @param filename what to name the exported file.
+	 * @throws IllegalArgumentException if a location is not a straight line (nothing is written)
+	 */
+	public static void exportLocationsCompact(int[][][] locations, String filename) {
+		try {
+			writeLocationsCompact(locations, filename);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes to a file the list of word locations, in the format of exportLocationsCompact, reporting any failure.
+	 * @param locations a list (for all the words) of lists (for the letters of each word) of 3D coordinates, each a straight line
+	 * @param filename what to name the written file.
+	 * @throws IOException if the file cannot be created or written
+	 * @throws IllegalArgumentException if a location is not a straight line (nothing is written)
+	 */
+	public static void writeLocationsCompact(int[][][] locations, String filename) throws IOException {
+		int numLocations = 0;
+		for (int i = 0; i < locations.length; i++) {
+			if (locations[i] == null) continue;
+			numLocations++;
+			for (int j = 2; j < locations[i].length; j++) {
+				for (int k = 0; k < 3; k++) {
+					if (locations[i][j][k]-locations[i][j-1][k] != locations[i][1][k]-locations[i][0][k]) {
+						throw new IllegalArgumentException("location "+i+" is not a straight line at letter "+j);
+					}
+				}
+			}
+		}
+
+		try (final PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(filename)))) {
+			pw.print(COMPACT_LOCATIONS);
+			pw.print(' ');
+			pw.print(numLocations);  // number of words
+			pw.print('\n');
+			for (int[][] location : locations) {
+				if (location == null) continue;
+				pw.print(location.length);  // number of characters in the word
+				for (int k = 0; k < 3; k++) {  // first letter
+					pw.print(' ');
+					pw.print(location[0][k]);
+				}
+				for (int k = 0; k < 3; k++) {  // direction (the zero vector for a single letter)
+					pw.print(' ');
+					pw.print((location.length > 1) ? location[1][k]-location[0][k] : 0);
+				}
+				pw.print('\n');
+			}
+			if (pw.checkError()) throw new IOException("could not write "+filename);
+		}
+	}
+
+	/**
+	 * Loads word locations from a file written by exportLocations or exportLocationsCompact, expanding them as little as possible.
+	 * A word whose letters are evenly spaced (every word a search finds) comes back as {LINE_RECORD, length, row, column, aisle, dx, dy, dz},
+	 * its j-th letter lying at (row+j*dx, column+j*dy, aisle+j*dz). Any other word from the per-letter format is kept as it was read,
+	 * {LETTERS_RECORD, length, row0, column0, aisle0, row1, ...}. Use wordLength and letterCoordinate to read either form.
+	 * @param filename name of the file to load
+	 * @return one record per word, in file order
+	 * @throws IOException if the file cannot be read or is malformed (naming the line and column)
+	 */
+	public static int[][] loadLocations (String filename) throws IOException {
+		try (final TokenReader s = new TokenReader(filename)) {
+			final boolean compact = !s.hasNextInt();
+			if (compact) s.expect(COMPACT_LOCATIONS);
+			final int column = s.getColumn();
+			final int numWords = s.nextInt();
+			if (numWords < 0) throw s.error(column, "negative word count");
+			final int[][] records = new int[numWords][];
+			int[] letters = new int[0]; //per-letter coordinates of the current word, reused across words
+			for (int i = 0; i < records.length; i++) {
+				final int lengthColumn = s.getColumn();
+				final int length = s.nextInt();
+				if (length < 0) throw s.error(lengthColumn, "negative word length");
+				final int[] record = new int[8];
+				record[0] = LINE_RECORD;
+				record[1] = length;
+				records[i] = record;
+				if (compact) {
+					for (int k = 2; k < 8; k++) record[k] = s.nextInt();
+					continue;
+				}
+				if (letters.length < 3*length) letters = new int[Math.max(3*length, 2*letters.length)];
+				for (int j = 0; j < 3*length; j++) letters[j] = s.nextInt();
+				boolean line = true;
+				for (int k = 0; k < 3 && length > 0; k++) { // per-letter format: keep the first letter and the step, if every letter follows on
+					record[2+k] = letters[k];
+					if (length > 1) record[5+k] = letters[3+k]-letters[k];
+					for (int j = 2; j < length; j++) line &= letters[3*j+k] == record[2+k]+j*record[5+k];
+				}
+				if (!line) { // keep the word as read
+					records[i] = new int[2+3*length];
+					records[i][0] = LETTERS_RECORD;
+					records[i][1] = length;
+					System.arraycopy(letters, 0, records[i], 2, 3*length);
+				}
+			}
+			return records;
+		}
+	}
+
+	/**
+	 * Reads the number of letters of a word loaded by loadLocations
+	 * @param record the word's record, in either form
+	 * @return the word's length
+	 */
+	public static int wordLength(int[] record) {
+		return record[1];
+	}
+
+	/**
+	 * Reads a coordinate of a letter of a word loaded by loadLocations
+	 * @param record the word's record, in either form
+	 * @param j index of the letter in the word
+	 * @param k 0 for the row, 1 for the column, 2 for the aisle
+	 * @return the coordinate
+	 * @throws IllegalArgumentException if the record has neither tag
+	 */
+	public static int letterCoordinate(int[] record, int j, int k) {
+		switch (record[0]) {
+			case LINE_RECORD: return record[2+k]+j*record[5+k];
+			case LETTERS_RECORD: return record[2+3*j+k];
+			default: throw new IllegalArgumentException("unknown location record tag "+record[0]);
 		}
 	}
 
@@ -427,6 +1229,20 @@ public class WordSearch3D {
 	 * @param filename what to name the exported file.
 	 */
 	public static void exportGrid (char[][][] grid, String filename) {
+		try {
+			writeGrid(grid, filename);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes to a file the contents of a 3D grid, in the format of exportGrid, reporting any failure.
+	 * @param grid a 3D grid of characters (with every dimension at least 1)
+	 * @param filename what to name the written file.
+	 * @throws IOException if the file cannot be created or written
+	 */
+	public static void writeGrid (char[][][] grid, String filename) throws IOException {
 		try (final PrintWriter pw = new PrintWriter(filename)) {
 			pw.print(grid.length);  // height
 			pw.print(' ');
@@ -443,9 +1259,70 @@ public class WordSearch3D {
 				}
 				pw.print('\n');
 			}
-			pw.close();
-		} catch (FileNotFoundException fnfe) {
-			fnfe.printStackTrace();
+			if (pw.checkError()) throw new IOException("could not write "+filename);
+		}
+	}
+
+	/**
+	 * Writes to a file the contents of a flat grid, in the format of exportGrid, reporting any failure.
+	 * @param grid a flat grid of characters
+	 * @param filename what to name the written file.
+	 * @throws IOException if the file cannot be created or written
+	 */
+	public static void writeGrid (CharGrid grid, String filename) throws IOException {
+		try (final PrintWriter pw = new PrintWriter(filename)) {
+			pw.print(grid.getRows());  // height
+			pw.print(' ');
+			pw.print(grid.getColumns());  // width
+			pw.print(' ');
+			pw.print(grid.getAisles());  // depth
+			pw.print('\n');
+			final int rowSize = grid.getColumns()*grid.getAisles();
+			for (int x = 0, offset = 0; x < grid.getRows(); x++) { //cells are stored in the order exportGrid writes them
+				for (int i = 0; i < rowSize; i++, offset++) {
+					pw.print(grid.get(offset));
+					pw.print(' ');
+				}
+				pw.print('\n');
+			}
+			if (pw.checkError()) throw new IOException("could not write "+filename);
+		}
+	}
+
+	/**
+	 * Exports to a file the contents of a flat grid in the compact binary format (see BinaryGrid),
+	 * which loadGrid opens without parsing.
+	 * @param grid a flat grid of characters (using at most 256 distinct characters)
+	 * @param filename what to name the exported file.
+	 */
+	public static void exportGridBinary (CharGrid grid, String filename) {
+		try {
+			BinaryGrid.write(grid, filename);
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Loads a grid from a file written by exportGrid or exportGridBinary, telling the formats apart by the binary magic number.
+	 * @param filename name of the file to load
+	 * @return flat grid held in the file
+	 * @throws IOException if the file cannot be read, is not a valid binary grid, or is a malformed text grid (naming the line and column)
+	 */
+	public static CharGrid loadGrid (String filename) throws IOException {
+		if (BinaryGrid.isBinary(filename)) return BinaryGrid.read(filename);
+		try (final TokenReader s = new TokenReader(filename)) {
+			// First scan for the size of the grid
+			final int column = s.getColumn();
+			final int rows = s.nextInt(), columns = s.nextInt(), aisles = s.nextInt();
+			if (rows < 0 || columns < 0 || aisles < 0 || (long)rows*columns*aisles > Integer.MAX_VALUE) throw s.error(column, "invalid grid size");
+			final CharGrid grid = new CharGrid(rows, columns, aisles);
+			// Now scan for the characters in the grid, straight into its backing array
+			final char[] cells = grid.cells();
+			for (int i = 0; i < cells.length; i++) {
+				cells[i] = s.nextChar();
+			}
+			return grid;
 		}
 	}
 
@@ -197,22 +197,17 @@ public class WordSearchApp extends Application {
 	 * Assigns random colors to each location.
 	 * @return a map from a 3-d coordinate to the color the letter should have in the grid.
 	 */
-	private Map<Tuple, Color> loadLocations () throws FileNotFoundException {
+	private Map<Tuple, Color> loadLocations () throws IOException {
 		final Map<Tuple, Color> locations = new HashMap<Tuple, Color>();
 		final Random rng = new Random();
 		final String locationsFilename = getParameters().getNamed().get("locations");
 		if (locationsFilename != null) {  // If user gave us a list of locations
-			try(final Scanner s = new Scanner(new File(locationsFilename))) {
-				final int numWords = s.nextInt();
-				for (int i = 0; i < numWords; i++) {
-					final int wordLen = s.nextInt();  // number of characters in the word
-					final Color color = Color.rgb(rng.nextInt(255), rng.nextInt(255), rng.nextInt(255),0.5);
-					for (int j = 0; j < wordLen; j++) {
-						final int x = s.nextInt();
-						final int y = s.nextInt();
-						final int z = s.nextInt();
-						locations.put(new Tuple(x, y, z), color);
-					}
+			// Each word usually arrives as its start, direction and length (in either file format) and is only expanded here
+			for (int[] word : WordSearch3D.loadLocations(locationsFilename)) {
+				final Color color = Color.rgb(rng.nextInt(255), rng.nextInt(255), rng.nextInt(255),0.5);
+				for (int j = 0; j < WordSearch3D.wordLength(word); j++) {
+					locations.put(new Tuple(WordSearch3D.letterCoordinate(word, j, 0), WordSearch3D.letterCoordinate(word, j, 1),
+						WordSearch3D.letterCoordinate(word, j, 2)), color);
 				}
 			}
 		}
@@ -220,31 +215,15 @@ public class WordSearchApp extends Application {
 	}
 
 	/**
-	 * Loads the grid of characters comprising the word search puzzle..
-	 * @return a map from a 3-d coordinate to the color the letter should have in the grid.
+	 * Loads the grid of characters comprising the word search puzzle, from either the text or the binary grid format.
+	 * @return the grid of characters
 	 */
-	private char[][][] loadGrid () throws FileNotFoundException, IllegalArgumentException {
+	private char[][][] loadGrid () throws IOException, IllegalArgumentException {
 		final String gridFilename = getParameters().getNamed().get("grid");
 		if (gridFilename == null) {
 			throw new IllegalArgumentException("No \"grid\" in parameters list");
 		}
-		try(final Scanner s = new Scanner(new File(gridFilename))) {
-			// First scan for the size of the grid
-			final int sizeX = s.nextInt();
-			final int sizeY = s.nextInt();
-			final int sizeZ = s.nextInt();
-			final char[][][] grid = new char[sizeX][sizeY][sizeZ];
-			// Now scan for the characters in the grid
-			for (int x = 0; x < sizeX; x++) {
-				for (int y = 0; y < sizeY; y++) {
-					for (int z = 0; z < sizeZ; z++) {
-						final String str = s.next();
-						grid[x][y][z] = str.charAt(0);
-					}
-				}
-			}
-			return grid;
-		}
+		return WordSearch3D.loadGrid(gridFilename).toArray();
 	}
 
 	/**
@@ -262,7 +241,7 @@ public class WordSearchApp extends Application {
 		} catch (IllegalArgumentException e) {
 			System.out.println("Invalid filenames");
 			return;
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			System.out.println("Could not load files");
 			return;
 		}
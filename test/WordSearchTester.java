@@ -2,6 +2,9 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.io.*;
+import java.nio.file.Files;
 
 /**
  * Code to test <tt>WordSearch3D</tt>.
@@ -306,6 +309,784 @@ public class WordSearchTester {
 		assertNull(_wordSearch.make(words, 5, 5, Integer.MIN_VALUE+1));
 	}
 
+	@Test
+	/**
+	 * Verifies that converting to and from a flat CharGrid preserves dimensions and contents
+	 */
+	public void testCharGridRoundTrip() {
+		final char[][][] grid = _wordSearch.makeRandom(3, 4, 5);
+		final CharGrid flat = CharGrid.fromArray(grid);
+
+		assertEquals(3, flat.getRows());
+		assertEquals(4, flat.getColumns());
+		assertEquals(5, flat.getAisles());
+		assertEquals(grid[2][3][4], flat.get(2, 3, 4));
+		assertEquals(flat.offset(2, 3, 4), flat.size()-1);
+		assertArrayEquals(grid, flat.toArray());
+		assertEquals(0, CharGrid.fromArray(new char[0][0][0]).size());
+
+		for (int[] size : new int[][]{{2048, 2048, 2048}, {-1, -1, 1}, {Integer.MAX_VALUE, 2, 1}}) {
+			try {
+				new CharGrid(size[0], size[1], size[2]);
+				fail("made a grid of "+Arrays.toString(size));
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that searching a flat grid gives the same locations as searching the 3D array
+	 */
+	public void testSearchGridMatchesArray() {
+		final String[] words = {"apple", "kiwi", "pea", "fig"};
+		final CharGrid grid = _wordSearch.makeGrid(words, 6, 6, 6);
+		assertNotNull(grid);
+
+		final int[][][] locations = _wordSearch.searchForAll(grid, words);
+		assertArrayEquals(_wordSearch.searchForAll(grid.toArray(), words), locations);
+		for (int i = 0; i < words.length; i++) assertArrayEquals(words[i], locations[i], _wordSearch.searchGrid(grid, words[i]));
+	}
+
+	@Test
+	/**
+	 * Verifies that a word cannot be found by reusing a single cell (no zero direction) but single letters are found
+	 */
+	public void testSearchNoZeroDirection() {
+		final char[][][] grid = {{{'a','b'}}};
+		assertNull(_wordSearch.search(grid, "aa"));
+		assertArrayEquals(new int[][]{{0,0,1}}, _wordSearch.search(grid, "b"));
+		assertArrayEquals(new int[][]{{0,0,1},{0,0,0}}, _wordSearch.search(grid, "ba"));
+	}
+
+	@Test
+	/**
+	 * Verifies that searching many words at once finds the same (first) locations as searching them one by one
+	 */
+	public void testSearchForAllMatchesSearch() {
+		final Random rng = new Random(2103);
+		final CharGrid grid = new CharGrid(5, 6, 7);
+		for (int i = 0; i < grid.size(); i++) grid.set(i, (char)(rng.nextInt(3)+'a'));
+
+		final String[] words = {"abc", "cba", "aba", "abc", null, "", "b", "z", "aaaa", "bcab", "acca", "abcabc", "cc", "bab"};
+		final int[][][] locations = _wordSearch.searchForAll(grid, words);
+		for (int i = 0; i < words.length; i++) {
+			assertArrayEquals(words[i], _wordSearch.searchGrid(grid, words[i]), locations[i]);
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that searching through a GridIndex finds the same locations as searching the grid directly
+	 */
+	public void testSearchWithIndex() {
+		final String[] words = {"plum", "lime", "fig", "kiwi", "b", "", null, "zzzzzz"};
+		final CharGrid grid = _wordSearch.makeGrid(Arrays.copyOf(words, 4), 7, 6, 5);
+		final GridIndex index = new GridIndex(grid);
+
+		int cells = 0;
+		for (char ch = 'a'; ch <= 'z'; ch++) cells += index.count(ch);
+		assertEquals(grid.size(), cells);
+		assertEquals(0, index.count('?'));
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), _wordSearch.searchForAll(index, words));
+
+		assertTrue(index.isCurrent());
+		grid.set(0, 0, 0, grid.get(0, 0, 0));
+		assertFalse(index.isCurrent()); //any write makes the index stale
+		try {
+			_wordSearch.searchGrid(index, "plum");
+			fail("a stale index should not be searched");
+		} catch (IllegalStateException expected) {
+		}
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), _wordSearch.searchForAll(new GridIndex(grid), words));
+	}
+
+	@Test
+	/**
+	 * Verifies that parallel searching (forced to split with a tiny threshold) matches the sequential search
+	 */
+	public void testParallelSearchMatchesSequential() {
+		final String[] words = {"apple", "orange", "pear", "peach", "lime", "plum", "kiwi", "nope", null, "a"};
+		final CharGrid grid = _wordSearch.makeGrid(Arrays.copyOf(words, 7), 9, 8, 7);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final ParallelSearch parallel = new ParallelSearch(pool, 1);
+			assertArrayEquals(_wordSearch.searchForAll(grid, words), parallel.searchForAll(grid, words));
+			for (String word : words) assertArrayEquals(word, _wordSearch.searchGrid(grid, word), parallel.searchGrid(grid, word));
+			parallel.close();
+			assertFalse(pool.isShutdown()); //a supplied pool belongs to the caller
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		final ParallelSearch owner = new ParallelSearch(2);
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), owner.searchForAll(grid, words));
+		owner.close();
+		assertTrue(owner.getPool().isShutdown());
+	}
+
+	/**
+	 * Asserts that the provided engine finds the same locations as the built-in search on a
+	 * grid with a small alphabet (so words occur many times, in many directions)
+	 * @param engine search engine to compare against the built-in search
+	 */
+	private void assertEngineMatchesBuiltIn(SearchEngine engine) {
+		final Random rng = new Random(3);
+		final CharGrid grid = new CharGrid(6, 5, 4);
+		for (int i = 0; i < grid.size(); i++) grid.set(i, (char)(rng.nextInt(3)+'a'));
+		final String[] words = {"abc", "cba", "aba", "abc", null, "", "b", "z", "aaaa", "bcab", "acca", "abcabc", "cc", "bab", "abcbacbacba"};
+
+		final WordSearch3D withEngine = new WordSearch3D();
+		withEngine.setEngine(engine);
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), withEngine.searchForAll(grid, words));
+		for (String word : words) assertArrayEquals(word, _wordSearch.searchGrid(grid, word), withEngine.searchGrid(grid, word));
+		assertNull(withEngine.searchGrid((CharGrid)null, "abc"));
+
+		grid.set(0, 'z'); //engine must notice the grid changed
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), withEngine.searchForAll(grid, words));
+		assertArrayEquals(_wordSearch.searchForAll(grid.toArray(), words), withEngine.searchForAll(grid.toArray(), words));
+	}
+
+	@Test
+	/**
+	 * Verifies that the line string search engine matches the built-in search
+	 */
+	public void testLineSearch() {
+		assertEngineMatchesBuiltIn(new LineSearch());
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			assertEngineMatchesBuiltIn(new ParallelSearch(pool, 1));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that the bit-parallel search engine matches the built-in search, including on a grid spanning many longs
+	 */
+	public void testBitSearch() {
+		assertEngineMatchesBuiltIn(new BitSearch());
+
+		final String[] words = {"apple", "orange", "pear", "peach", "lime", "plum", "kiwi", "nope", "a"};
+		final CharGrid grid = _wordSearch.makeGrid(Arrays.copyOf(words, 7), 13, 11, 9);
+		final WordSearch3D withEngine = new WordSearch3D();
+		withEngine.setEngine(new BitSearch());
+		assertArrayEquals(_wordSearch.searchForAll(grid, words), withEngine.searchForAll(grid, words));
+	}
+
+	@Test
+	/**
+	 * Verifies that the rolling hash search engine matches the built-in search
+	 */
+	public void testRollingHashSearch() {
+		assertEngineMatchesBuiltIn(new RollingHashSearch());
+	}
+
+	@Test
+	/**
+	 * Verifies that the result cache matches the built-in search, counts hits and misses, evicts old
+	 * entries and never returns results for a grid's old contents
+	 */
+	public void testSearchCache() {
+		assertEngineMatchesBuiltIn(new SearchCache());
+		assertEngineMatchesBuiltIn(new SearchCache(new RollingHashSearch(), 16));
+
+		final SearchCache cache = new SearchCache(new WordSearch3D(), 2);
+		final CharGrid grid = CharGrid.fromArray(new char[][][] {{{'f','o','o'}, {'b','a','r'}}});
+		assertNotNull(cache.searchGrid(grid, "foo"));
+		assertNotNull(cache.searchGrid(grid, "foo"));
+		assertNull(cache.searchGrid(grid, "baz"));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.searchForAll(grid, new String[]{"bar", "baz"}); //"foo" is the least recently used, so it is evicted
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getHits()); //baz was cached
+		cache.searchGrid(grid, "foo");
+		assertEquals(4, cache.getMisses());
+
+		grid.set(0, 0, 2, 'z'); //"foo" is gone once the grid changes
+		assertNull(cache.searchGrid(grid, "foo"));
+		assertArrayEquals(new int[][]{{0,0,0},{0,0,1},{0,0,2}}, cache.searchGrid(CharGrid.fromArray(new char[][][] {{{'f','o','o'}}}), "foo"));
+	}
+
+	@Test
+	/**
+	 * Verifies that searchAll lists every occurrence in search order and that count stops at its limit
+	 */
+	public void testSearchAllAndCount() {
+		final char[][][] grid = {
+			{
+				{'a','b','a'},
+				{'b','a','b'},
+				{'a','b','a'}
+			}
+		};
+		final Iterator<WordSearch3D.Composite> occurrences = _wordSearch.searchAll(grid, "ab");
+		assertTrue(occurrences.hasNext());
+		assertArrayEquals(_wordSearch.search(grid, "ab"), _wordSearch.getCharPositions(occurrences.next()));
+		int n = 1;
+		while (occurrences.hasNext()) {
+			final int[][] loc = _wordSearch.getCharPositions(occurrences.next());
+			assertEquals('a', grid[loc[0][0]][loc[0][1]][loc[0][2]]);
+			assertEquals('b', grid[loc[1][0]][loc[1][1]][loc[1][2]]);
+			n++;
+		}
+		assertEquals(12, n); //corners have 2 neighbouring b's each, the centre has 4
+		assertEquals(12, _wordSearch.count(grid, "ab", Integer.MAX_VALUE));
+		assertEquals(2, _wordSearch.count(grid, "ab", 2));
+		assertEquals(5, _wordSearch.count(grid, "a", 10)); //one per cell
+		assertEquals(4, _wordSearch.count(grid, "aba", 10)); //palindrome on each edge counted once, not once per reading
+		assertEquals(0, _wordSearch.count(grid, "", 10));
+		assertFalse(_wordSearch.searchAll(grid, "abc").hasNext());
+	}
+
+	@Test
+	/**
+	 * Verifies that the dictionary solver finds exactly the dictionary words that search finds, at the same locations
+	 */
+	public void testDictionarySolver() {
+		final String[] dictionary = {"apple", "orange", "pear", "peach", "lime", "plum", "kiwi", "a", "ab", "ba", "abc", "pear", "", null, "zzzzzzzzzzzz"};
+		final CharGrid grid = _wordSearch.makeGrid(Arrays.copyOf(dictionary, 7), 8, 7, 6);
+		final DictionarySolver solver = new DictionarySolver(dictionary);
+
+		final int[][][] locations = solver.solve(grid);
+		assertEquals(dictionary.length, locations.length);
+		for (int i = 0; i < dictionary.length; i++) assertArrayEquals(dictionary[i], _wordSearch.searchGrid(grid, dictionary[i]), locations[i]);
+		assertTrue(solver.findWords(grid).containsAll(Arrays.asList("apple", "orange", "pear", "peach", "lime", "plum", "kiwi")));
+		assertFalse(solver.findWords(grid).contains("zzzzzzzzzzzz"));
+	}
+
+	@Test
+	/**
+	 * Verifies that PuzzleBuilder only places a word if every word placed before it can still be found,
+	 * moving a word's recorded location when it is overwritten but still present elsewhere
+	 */
+	public void testPuzzleBuilder() {
+		final CharGrid grid = CharGrid.fromArray(new char[][][] {{{'x','x','x','x','c','a','t'}}});
+		final PuzzleBuilder builder = new PuzzleBuilder(_wordSearch, grid);
+		final int forwards = CharGrid.direction(0, 0, 1);
+		assertTrue(builder.place("cat", 0, forwards));
+		assertFalse(builder.place("catnip", 2, forwards)); //runs off the grid
+		assertTrue(builder.place("dog", 0, forwards)); //overwrites the first cat, but another is left
+		assertArrayEquals(new int[][]{{0,0,4},{0,0,5},{0,0,6}}, builder.getLocation(0));
+		assertFalse(builder.place("cow", 4, forwards)); //would remove the last cat
+		assertEquals("dogxcat", new String(grid.cells()));
+		assertEquals(2, builder.getPlacedCount());
+		assertTrue(_wordSearch.hasAll(grid, new String[]{"cat", "dog"}));
+	}
+
+	@Test
+	/**
+	 * Verifies that the occupancy map lets a word share letters with placed words but not overwrite them
+	 */
+	public void testPuzzleBuilderOccupancy() {
+		final CharGrid grid = CharGrid.fromArray(new char[3][3][1]);
+		final PuzzleBuilder builder = new PuzzleBuilder(_wordSearch, grid);
+		final int down = CharGrid.direction(1, 0, 0), across = CharGrid.direction(0, 1, 0);
+		assertTrue(builder.place("cat", grid.offset(0, 0, 0), across));
+		assertTrue(builder.canPlace("cow", grid.offset(0, 0, 0), down)); //shares the c
+		assertFalse(builder.canPlace("dog", grid.offset(0, 0, 0), down)); //would overwrite the c
+		assertTrue(builder.canPlace("dog", grid.offset(1, 0, 0), across)); //free cells
+		assertFalse(builder.canPlace("dogs", grid.offset(1, 0, 0), across)); //runs off the grid
+		final char[][][] before = grid.toArray();
+		assertFalse(_wordSearch.placeWord(builder, _wordSearch.new Composite(_wordSearch.new Position(0, 0, 0), _wordSearch.new Vector(1, 0, 0), "dog")));
+		assertArrayEquals(before, grid.toArray());
+
+		//a single letter recorded in a direction whose stride is 0 on this grid (no aisle to move along)
+		final CharGrid narrow = CharGrid.fromArray(new char[][][] {{{'x'}, {'y'}}});
+		final PuzzleBuilder single = new PuzzleBuilder(_wordSearch, narrow);
+		assertEquals(0, narrow.stride(CharGrid.direction(0, 1, -1)));
+		assertTrue(single.place("x", 0, CharGrid.direction(0, 1, -1)));
+		assertFalse(single.place("zy", 0, across)); //would overwrite the x, which is nowhere else
+		assertEquals("xy", new String(narrow.cells()));
+		assertTrue(single.place("y", 1, CharGrid.direction(1, -1, 0)));
+		assertTrue(single.place("xy", 0, across)); //shares both letters
+	}
+
+	@Test
+	/**
+	 * Verifies that rolling a PuzzleBuilder back to a mark restores the letters, placed words and their locations
+	 */
+	public void testPuzzleBuilderRollback() {
+		final CharGrid grid = CharGrid.fromArray(new char[][][] {{{'x','x','x','x','c','a','t'}}});
+		final PuzzleBuilder builder = new PuzzleBuilder(_wordSearch, grid);
+		final int forwards = CharGrid.direction(0, 0, 1);
+		final int start = builder.mark();
+		assertTrue(builder.place("cat", 0, forwards));
+		final int placedCat = builder.mark();
+		assertTrue(builder.place("dog", 0, forwards)); //moves cat to the copy at the end
+		assertTrue(builder.place("z", 3, forwards));
+		assertEquals("dogzcat", new String(grid.cells()));
+
+		builder.rollback(placedCat);
+		assertEquals("catxcat", new String(grid.cells()));
+		assertEquals(1, builder.getPlacedCount());
+		assertArrayEquals(new int[][]{{0,0,0},{0,0,1},{0,0,2}}, builder.getLocation(0));
+		assertFalse(builder.canPlace("dog", 0, forwards)); //cat is locked where it was
+
+		builder.rollback(start);
+		assertEquals("xxxxcat", new String(grid.cells()));
+		assertEquals(0, builder.getPlacedCount());
+		assertTrue(builder.canPlace("dog", 0, forwards));
+	}
+
+	@Test
+	/**
+	 * Verifies that the backtracking generator fills tightly constrained puzzles the random generator usually cannot,
+	 * and proves impossible ones impossible rather than giving up
+	 */
+	public void testBacktrackingGenerator() {
+		final BacktrackingGenerator generator = new BacktrackingGenerator();
+		_wordSearch.setGenerator(generator);
+		final String[] crossword = new String[]{"abc", "def", "ghi", "adg", "beh", "cfi", "aei"}; //every cell of a 3x3 grid is shared
+		final char[][][] grid = _wordSearch.make(crossword, 1, 3, 3);
+		assertNotNull(grid);
+		for (String word : crossword) assertNotNull(word, _wordSearch.search(grid, word));
+		assertNotNull(_wordSearch.make(new String[]{"amc", "dmf", "gmi", "jml", "nmo", "pmr", "smu", "vmx", "yma", "zmq"}, 3, 3, 3));
+
+		assertNull(_wordSearch.make(new String[]{"foo", "bar", "lin", "tut"}, 1, 3, 3));
+		final PuzzleBuilder builder = new PuzzleBuilder(_wordSearch, _wordSearch.makeRandomGrid(1, 3, 3));
+		assertEquals(Boolean.FALSE, generator.solve(builder, new String[]{"foo", "bar", "lin", "tut"}));
+		assertEquals(0, builder.getPlacedCount());
+		assertNull(new BacktrackingGenerator(1).solve(builder, crossword)); //gave up
+
+		//tie-breaks come from the WordSearch3D's seeded random stream
+		final String[] words = new String[]{"apple", "pear", "plum", "lime"};
+		final int[][][][] placements = new int[3][][][];
+		for (int i = 0; i < placements.length; i++) {
+			final WordSearch3D wordSearch = new WordSearch3D((i < 2) ? 5 : 6);
+			wordSearch.setGenerator(generator);
+			placements[i] = wordSearch.searchForAll(wordSearch.make(words, 5, 5, 5), words);
+		}
+		assertTrue(Arrays.deepEquals(placements[0], placements[1]));
+		assertFalse(Arrays.deepEquals(placements[0], placements[2]));
+	}
+
+	@Test
+	/**
+	 * Verifies that the parallel generator produces complete puzzles and still reports impossible ones
+	 */
+	public void testParallelGenerator() {
+		final String[] words = new String[]{"apple", "orange", "pear", "peach", "durian", "lemon", "lime", "plum", "grape", "kiwi"};
+		final ParallelGenerator generator;
+		try (final ParallelGenerator owned = new ParallelGenerator(4)) {
+			generator = owned;
+			_wordSearch.setGenerator(generator);
+			final CharGrid grid = _wordSearch.makeGrid(words, 6, 6, 6);
+			assertNotNull(grid);
+			assertTrue(_wordSearch.hasAll(grid, words));
+			assertNull(_wordSearch.make(new String[]{"foo", "bar", "lin", "tut"}, 1, 3, 3));
+		}
+		assertTrue(generator.getPool().isShutdown()); //closing shuts down a pool the generator made
+
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		new ParallelGenerator(pool, 2, 10).close();
+		assertFalse(pool.isShutdown()); //but not one it was given
+		pool.shutdown();
+	}
+
+	@Test
+	/**
+	 * Verifies that generation with the same seed is reproducible, including through split streams
+	 */
+	public void testSeededGeneration() {
+		final String[] words = new String[]{"apple", "orange", "pear", "peach", "durian", "lemon", "lime", "plum"};
+		final char[][][] grid = new WordSearch3D(42).make(words, 7, 6, 5);
+		assertNotNull(grid);
+		assertArrayEquals(grid, new WordSearch3D(42).make(words, 7, 6, 5));
+		assertFalse(Arrays.deepEquals(grid, new WordSearch3D(43).make(words, 7, 6, 5)));
+		assertArrayEquals(new WordSearch3D(7).split().makeRandom(4, 4, 4), new WordSearch3D(7).split().makeRandom(4, 4, 4));
+
+		final WordSearch3D first = new WordSearch3D(42), second = new WordSearch3D(42);
+		try (final ParallelGenerator generator = new ParallelGenerator(1)) {
+			first.setGenerator(generator);
+			second.setGenerator(generator);
+			assertArrayEquals(first.make(words, 7, 6, 5), second.make(words, 7, 6, 5));
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that the batch pipeline writes every puzzle it can make, in the exportGrid/exportLocations formats
+	 */
+	public void testBatchGenerator() throws Exception {
+		final File directory = Files.createTempDirectory("batch").toFile();
+		final String jobs = "# size, then words\n4 4 4 cat dog\n\nbad line\n1 1 1 toolong\n3 3 3 ox ax\n";
+		final long[] counts = new BatchGenerator(2, 1).run(new BufferedReader(new StringReader(jobs)), directory);
+		assertArrayEquals(new long[]{2, 1}, counts);
+		assertTrue(new File(directory, "puzzle-0-grid.txt").isFile());
+		assertTrue(new File(directory, "puzzle-2-locations.txt").isFile());
+		assertFalse(new File(directory, "puzzle-1-grid.txt").exists()); //1x1x1 cannot hold toolong
+
+		final char[][][] expected = new WordSearch3D(1).make(new String[]{"cat", "dog"}, 4, 4, 4); //job 0 uses seed 1+0
+		WordSearch3D.exportGrid(expected, new File(directory, "expected.txt").getPath());
+		assertEquals(new String(Files.readAllBytes(new File(directory, "expected.txt").toPath())),
+			new String(Files.readAllBytes(new File(directory, "puzzle-0-grid.txt").toPath())));
+
+		//a job that cannot be written (a directory is in the way of its grid file) is counted as failed without stopping the jobs after it
+		final StringBuilder many = new StringBuilder("0 5 5\n");
+		for (int i = 0; i < 3*BatchGenerator.QUEUE_CAPACITY; i++) many.append("3 3 3 cat dog\n");
+		for (File file : directory.listFiles()) file.delete();
+		final File blocked = new File(directory, "puzzle-1-grid.txt");
+		assertTrue(blocked.mkdir() && new File(blocked, "keep").createNewFile());
+		assertArrayEquals(new long[]{3*BatchGenerator.QUEUE_CAPACITY, 1}, new BatchGenerator(2, 1).run(new BufferedReader(new StringReader(many.toString())), directory));
+		assertEquals(2*3*BatchGenerator.QUEUE_CAPACITY+1, directory.listFiles().length); //an empty grid is written too
+		assertEquals("0 5 5\n", new String(Files.readAllBytes(new File(directory, "puzzle-0-grid.txt").toPath())));
+		new File(blocked, "keep").delete();
+		for (File file : directory.listFiles()) file.delete();
+		directory.delete();
+
+		//nor is a puzzle whose files cannot be created
+		assertArrayEquals(new long[]{0, 1}, new BatchGenerator(1, 1).run(new BufferedReader(new StringReader("3 3 3 cat\n")), directory));
+	}
+
+	@Test
+	/**
+	 * Verifies that in-bounds sampling only picks placements that fit, with a nonzero direction,
+	 * so a word as long as the grid is placed without wasted attempts
+	 */
+	public void testInBoundsSampling() {
+		final CharGrid grid = new CharGrid(5, 4, 3);
+		final long[] counts = grid.placementCounts(4);
+		final WordSearch3D.Composite comp = _wordSearch.new Composite("abcd");
+		for (int i = 0; i < 1000; i++) {
+			comp.randomize(grid, counts);
+			final WordSearch3D.Vector vec = comp.getVector();
+			assertFalse(vec.getX() == 0 && vec.getY() == 0 && vec.getZ() == 0);
+			for (int[] pos : _wordSearch.getCharPositions(comp)) assertTrue(Arrays.toString(pos), grid.inBounds(pos[0], pos[1], pos[2]));
+		}
+		assertEquals(0, grid.placementCounts(6)[CharGrid.DIRECTIONS.length-1]);
+		assertEquals(5*4*3*CharGrid.DIRECTIONS.length, grid.placementCounts(1)[CharGrid.DIRECTIONS.length-1]);
+
+		//single letters always get direction 0, whose stride is never 0, and every cell is reachable
+		final CharGrid flat = new CharGrid(1, 3, 1);
+		final WordSearch3D.Composite letter = _wordSearch.new Composite("a");
+		final Set<Integer> columns = new HashSet<Integer>();
+		for (int i = 0; i < 100; i++) {
+			letter.randomize(flat, flat.placementCounts(1));
+			final WordSearch3D.Vector vec = letter.getVector();
+			assertEquals(CharGrid.DIRECTIONS[0][0]+","+CharGrid.DIRECTIONS[0][1]+","+CharGrid.DIRECTIONS[0][2], vec.getX()+","+vec.getY()+","+vec.getZ());
+			columns.add(letter.getPosition().getColumn());
+		}
+		assertEquals(3, columns.size());
+		assertNotNull(_wordSearch.make(new String[]{"a", "b", "c"}, 1, 3, 1));
+
+		final String[] words = new String[]{"abcdefghijkl", "mnopqrstuvwx"}; //only the two lines along the 12-long axis fit
+		for (int i = 0; i < 20; i++) assertNotNull(_wordSearch.make(words, 1, 2, 12));
+	}
+
+	@Test
+	/**
+	 * Verifies that the region generator places words where it says it did, reports what it left out,
+	 * and stops at the target fill density
+	 */
+	public void testRegionGenerator() {
+		final Random rng = new Random(21);
+		final String[] words = new String[3000];
+		for (int i = 0; i < words.length; i++) {
+			final char[] letters = new char[3+rng.nextInt(8)];
+			for (int j = 0; j < letters.length; j++) letters[j] = (char)('a'+rng.nextInt(26));
+			words[i] = new String(letters);
+		}
+		final WordSearch3D wordSearch = new WordSearch3D(21);
+		final GenerationResult result = new RegionGenerator(8, 0.25).make(wordSearch, words, 30, 30, 30);
+		assertEquals(words.length, result.getRequestedCount());
+		assertTrue(String.valueOf(result.getPlacedCount()), result.getPlacedCount() > 500);
+		assertEquals(result.getPlacedCount()+result.getMissingWords().length, words.length);
+
+		final boolean[] used = new boolean[result.getGrid().size()];
+		int cells = 0;
+		for (int i = 0; i < words.length; i++) {
+			final int[][] location = result.getLocations()[i];
+			if (location == null) continue;
+			for (int j = 0; j < location.length; j++) {
+				assertEquals(words[i].charAt(j), result.getGrid().get(location[j][0], location[j][1], location[j][2]));
+				final int offset = result.getGrid().offset(location[j][0], location[j][1], location[j][2]);
+				if (!used[offset]) cells++;
+				used[offset] = true;
+			}
+		}
+		assertTrue(cells < 0.25*30*30*30+words.length*10); //each region stops at a quarter full, give or take the word that fills it
+
+		final GenerationResult small = new RegionGenerator().make(wordSearch, new String[]{"cat", "toolong"}, 4, 4, 4);
+		assertArrayEquals(new String[]{"toolong"}, small.getMissingWords());
+		assertFalse(small.isComplete());
+	}
+
+	@Test
+	/**
+	 * Verifies that make with a deadline returns a complete puzzle when there is time,
+	 * and a consistent partial one when it runs out or is cancelled
+	 */
+	public void testMakeWithDeadline() {
+		final String[] words = new String[]{"apple", "orange", "pear", "peach", "durian", "lemon", "lime", "plum"};
+		final GenerationResult result = _wordSearch.make(words, 8, 8, 8, Deadline.after(10000));
+		assertTrue(result.isComplete());
+		assertTrue(_wordSearch.hasAll(result.getGrid(), words));
+
+		final String[] crowded = new String[]{"abc", "def", "ghi", "jkl", "mno", "pqr"}; //needs more cells than a 1x3x3 grid has
+		final GenerationResult partial = _wordSearch.make(crowded, 1, 3, 3, Deadline.after(10000));
+		assertFalse(partial.isComplete());
+		assertTrue(partial.getPlacedCount() >= 3);
+		for (String word : partial.getPlacedWords()) assertNotNull(word, _wordSearch.searchGrid(partial.getGrid(), word));
+
+		final Deadline cancelled = Deadline.none();
+		cancelled.cancel();
+		final GenerationResult none = _wordSearch.make(words, 8, 8, 8, cancelled);
+		assertEquals(0, none.getPlacedCount());
+		assertEquals(words.length, none.getMissingWords().length);
+		assertNull(_wordSearch.make(words, -1, 8, 8, Deadline.none()));
+
+		assertTrue(_wordSearch.make(words, 8, 8, 8, null).isComplete()); //no deadline
+		final GenerationResult empty = _wordSearch.make(null, 2, 3, 4, null);
+		assertEquals(2*3*4, empty.getGrid().size());
+		assertTrue(empty.isComplete());
+		assertEquals(0, new RegionGenerator().make(_wordSearch, null, 2, 3, 4).getPlacedCount()); //same as the region generator
+	}
+
+	@Test
+	/**
+	 * Verifies that grids survive a round trip through the binary format, and that loadGrid reads both formats
+	 */
+	public void testBinaryGrid() throws IOException {
+		final File text = File.createTempFile("grid", ".txt"), binary = File.createTempFile("grid", ".bin");
+		try {
+			final CharGrid grid = _wordSearch.makeRandomGrid(7, 5, 3);
+			grid.set(0, 'Z');
+			WordSearch3D.exportGridBinary(grid, binary.getPath());
+			final Set<Character> alphabet = new HashSet<Character>();
+			for (int i = 0; i < grid.size(); i++) alphabet.add(grid.get(i));
+			assertEquals(4+1+12+2+2*alphabet.size()+grid.size(), binary.length()); //header, alphabet, then one byte per cell
+			assertTrue(BinaryGrid.isBinary(binary.getPath()));
+			assertArrayEquals(grid.toArray(), WordSearch3D.loadGrid(binary.getPath()).toArray());
+			assertEquals(grid.fingerprint(), BinaryGrid.read(binary.getPath()).fingerprint());
+
+			WordSearch3D.exportGrid(grid.toArray(), text.getPath());
+			assertFalse(BinaryGrid.isBinary(text.getPath()));
+			assertArrayEquals(grid.toArray(), WordSearch3D.loadGrid(text.getPath()).toArray());
+
+			final CharGrid empty = new CharGrid(0, 0, 0);
+			WordSearch3D.exportGridBinary(empty, binary.getPath());
+			assertEquals(0, WordSearch3D.loadGrid(binary.getPath()).size());
+
+			try {
+				BinaryGrid.read(text.getPath());
+				fail("text grid read as binary");
+			}
+			catch (IOException expected) {
+			}
+		}
+		finally {
+			text.delete();
+			binary.delete();
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that the compact locations format round-trips, loads the same records as the per-letter format, and is smaller
+	 */
+	public void testCompactLocations() throws IOException {
+		final File full = File.createTempFile("locations", ".txt"), compact = File.createTempFile("locations", ".txt");
+		try {
+			final String[] words = {"apple", "orange", "pear", "peach", "lemon", "lime", "plum", "grape", "kiwi", "x", "missing"};
+			final char[][][] grid = _wordSearch.make(Arrays.copyOf(words, words.length-1), 8, 8, 8);
+			final int[][][] locations = _wordSearch.searchForAll(grid, words);
+			assertNull(locations[words.length-1]);
+			WordSearch3D.exportLocations(locations, full.getPath());
+			WordSearch3D.exportLocationsCompact(locations, compact.getPath());
+			assertTrue(compact.length() < full.length());
+
+			final int[][] records = WordSearch3D.loadLocations(compact.getPath());
+			assertEquals(words.length-1, records.length);
+			assertArrayEquals(records, WordSearch3D.loadLocations(full.getPath()));
+			for (int i = 0; i < records.length; i++) {
+				assertEquals(words[i].length(), WordSearch3D.wordLength(records[i]));
+				for (int j = 0; j < words[i].length(); j++) {
+					for (int k = 0; k < 3; k++) assertEquals(locations[i][j][k], WordSearch3D.letterCoordinate(records[i], j, k));
+				}
+			}
+			assertArrayEquals(new int[]{WordSearch3D.LINE_RECORD, 1, locations[9][0][0], locations[9][0][1], locations[9][0][2], 0, 0, 0}, records[9]);
+
+			try (final PrintWriter pw = new PrintWriter(full)) {
+				pw.print("2\n3\n0 0 0 1 1 1 2 0 2\n2\n4 4 4 0 0 0\n");  // bends after the second letter, then a line
+			}
+			final int[][] bent = WordSearch3D.loadLocations(full.getPath());
+			assertArrayEquals(new int[]{WordSearch3D.LETTERS_RECORD, 3, 0, 0, 0, 1, 1, 1, 2, 0, 2}, bent[0]); //kept as read
+			assertArrayEquals(new int[]{WordSearch3D.LINE_RECORD, 2, 4, 4, 4, -4, -4, -4}, bent[1]);
+			final int[][] letters = {{0, 0, 0}, {1, 1, 1}, {2, 0, 2}};
+			for (int j = 0; j < 3; j++) {
+				for (int k = 0; k < 3; k++) assertEquals(letters[j][k], WordSearch3D.letterCoordinate(bent[0], j, k));
+			}
+			assertEquals(0, WordSearch3D.letterCoordinate(bent[1], 1, 2));
+
+			final int[][][] bentLocations = {{{0, 0, 0}, {1, 1, 1}, {2, 0, 2}}};
+			compact.delete();
+			try {
+				WordSearch3D.exportLocationsCompact(bentLocations, compact.getPath());
+				fail("a bent location cannot be written compactly");
+			} catch (IllegalArgumentException expected) {
+				assertFalse(compact.exists()); //rejected before the file is created
+			}
+		}
+		finally {
+			full.delete();
+			compact.delete();
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that TokenReader reads integers and characters, including non-ASCII ones, and reports malformed input by line and column
+	 */
+	public void testTokenReader() throws IOException {
+		final byte[] text = "2 -3\n\u00e9 x\r\n  2147483647 \u20ac".getBytes("UTF-8");
+		try (final TokenReader reader = new TokenReader(new ByteArrayInputStream(text), "t")) {
+			assertTrue(reader.hasNextInt());
+			assertEquals(2, reader.nextInt());
+			assertEquals(-3, reader.nextInt());
+			assertFalse(reader.hasNextInt());
+			assertEquals('\u00e9', reader.nextChar());
+			assertEquals('x', reader.nextChar());
+			assertEquals(Integer.MAX_VALUE, reader.nextInt());
+			assertEquals('\u20ac', reader.nextChar());
+		}
+
+		final String[][] malformed = { //input, kinds of token to read (i for integer, c for character), message for the last
+			{"1 2\n 3x", "iii", "t:2:2: expected an integer but found 'x'"},
+			{"1\n\n  ab", "ic", "t:3:3: expected a single character but found a longer token"},
+			{"", "c", "t:1:1: expected a character but found end of file"},
+			{"99999999999", "i", "t:1:1: integer out of range"},
+		};
+		for (String[] test : malformed) {
+			try (final TokenReader reader = new TokenReader(new ByteArrayInputStream(test[0].getBytes("UTF-8")), "t")) {
+				for (char kind : test[1].toCharArray()) {
+					if (kind == 'i') reader.nextInt();
+					else reader.nextChar();
+				}
+				fail("read malformed input "+test[0]);
+			}
+			catch (IOException expected) {
+				assertEquals(test[2], expected.getMessage());
+			}
+		}
+
+		final File file = File.createTempFile("grid", ".txt");
+		try {
+			try (final PrintWriter pw = new PrintWriter(file)) {
+				pw.print("1 1 2\na bc\n");
+			}
+			WordSearch3D.loadGrid(file.getPath());
+			fail("loaded malformed grid");
+		}
+		catch (IOException expected) {
+			assertTrue(expected.getMessage(), expected.getMessage().endsWith(":2:3: expected a single character but found a longer token"));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	/**
+	 * Verifies that direction pruning (startBox, allowedDirections and directionMasks) allows exactly the
+	 * placements that stay inside the grid, including words as long as a dimension and longer than all of them
+	 */
+	public void testDirectionPruning() {
+		final int[][] shapes = {{1, 7, 1}, {3, 5, 2}, {4, 4, 4}};
+		for (int[] shape : shapes) {
+			final CharGrid grid = new CharGrid(shape[0], shape[1], shape[2]);
+			final int longest = Math.max(shape[0], Math.max(shape[1], shape[2]));
+			for (int len = 1; len <= longest+1; len++) {
+				final int[][] masks = {grid.directionMasks(0, len), grid.directionMasks(1, len), grid.directionMasks(2, len)};
+				for (int d = 0; d < CharGrid.DIRECTIONS.length; d++) {
+					final int[] vec = CharGrid.DIRECTIONS[d];
+					final int[] box = grid.startBox(d, len);
+					for (int r = 0; r < shape[0]; r++) {
+						for (int c = 0; c < shape[1]; c++) {
+							for (int a = 0; a < shape[2]; a++) {
+								final boolean fits = grid.inBounds(r+vec[0]*(len-1), c+vec[1]*(len-1), a+vec[2]*(len-1));
+								final String where = Arrays.toString(shape)+" len "+len+" dir "+d+" at "+r+","+c+","+a;
+								assertEquals(where, fits, (grid.allowedDirections(r, c, a, len) & (1 << d)) != 0);
+								assertEquals(where, fits, (masks[0][r] & masks[1][c] & masks[2][a] & (1 << d)) != 0);
+								assertEquals(where, fits, r >= box[0] && r < box[1] && c >= box[2] && c < box[3] && a >= box[4] && a < box[5]);
+								assertEquals(where, fits, grid.lineLength(r, c, a, d) >= len);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		//a word longer than every dimension fits nowhere
+		final CharGrid cube = new CharGrid(4, 4, 4);
+		for (int d = 0; d < CharGrid.DIRECTIONS.length; d++) {
+			final int[] box = cube.startBox(d, 5);
+			assertTrue(box[0] == box[1] || box[2] == box[3] || box[4] == box[5]);
+		}
+		assertEquals(0, cube.allowedDirections(0, 0, 0, 5));
+		assertEquals(0, cube.placementCounts(5)[CharGrid.DIRECTIONS.length-1]);
+
+		//on a 1x7x1 grid a word as long as the grid only runs along the column, from either end
+		final CharGrid line = CharGrid.fromArray(new char[][][]{{{'a'}, {'b'}, {'c'}, {'d'}, {'e'}, {'f'}, {'g'}}});
+		assertEquals(1 << CharGrid.direction(0, 1, 0), line.allowedDirections(0, 0, 0, 7));
+		assertEquals(1 << CharGrid.direction(0, -1, 0), line.allowedDirections(0, 6, 0, 7));
+		assertEquals(0, line.allowedDirections(0, 3, 0, 7));
+		assertArrayEquals(new int[][]{{0,0,0},{0,1,0},{0,2,0},{0,3,0},{0,4,0},{0,5,0},{0,6,0}}, _wordSearch.searchGrid(line, "abcdefg"));
+		assertArrayEquals(new int[][]{{0,6,0},{0,5,0},{0,4,0},{0,3,0},{0,2,0},{0,1,0},{0,0,0}}, _wordSearch.searchGrid(line, "gfedcba"));
+		assertNull(_wordSearch.searchGrid(line, "abcdefgh"));
+	}
+
+	@Test
+	/**
+	 * Verifies that the 3D array versions of checkAt, checkLine and placeWord agree with the flat grid versions.
+	 */
+	public void testArrayAdaptersMatchFlat() {
+		final char[][][] grid = _wordSearch.make(new String[]{"cat", "dog", "emu"}, 3, 4, 5);
+		final CharGrid flat = CharGrid.fromArray(grid);
+		for (String word : new String[]{"cat", "dog", "emu", "c", "zzz", ""}) {
+			for (int r = 0; r < 3; r++) for (int c = 0; c < 4; c++) for (int a = 0; a < 5; a++) {
+				final WordSearch3D.Position pos = _wordSearch.new Position(r, c, a);
+				final WordSearch3D.Composite expected = _wordSearch.checkAt(flat, pos, word), actual = _wordSearch.checkAt(grid, pos, word);
+				assertEquals(word, expected == null, actual == null);
+				if (expected == null) continue;
+				assertEquals(word, expected.getVector().getX(), actual.getVector().getX());
+				assertEquals(word, expected.getVector().getY(), actual.getVector().getY());
+				assertEquals(word, expected.getVector().getZ(), actual.getVector().getZ());
+			}
+		}
+		final WordSearch3D.Vector down = _wordSearch.new Vector(1, 0, 0);
+		final WordSearch3D.Composite fits = _wordSearch.new Composite(_wordSearch.new Position(0, 1, 2), down, "owl");
+		final WordSearch3D.Composite off = _wordSearch.new Composite(_wordSearch.new Position(1, 1, 2), down, "owl");
+		assertArrayEquals(_wordSearch.placeWord(flat, fits).toArray(), _wordSearch.placeWord(grid, fits));
+		assertTrue(_wordSearch.checkLine(_wordSearch.placeWord(grid, fits), fits.getPosition(), down, "owl"));
+		assertNull(_wordSearch.placeWord(grid, off));
+		assertFalse(_wordSearch.checkLine(grid, off.getPosition(), down, "owl"));
+		assertArrayEquals(flat.toArray(), grid); //placeWord copies rather than writing into its argument
+	}
+
+	@Test
+	/**
+	 * Verifies that Deadline.after handles budgets too large to count in nanoseconds and rejects negative ones
+	 */
+	public void testDeadlineBounds() {
+		for (long millis : new long[]{Long.MAX_VALUE, Long.MAX_VALUE/1000, Long.MAX_VALUE/1000000+1, 1000L*60*60*24*365*200}) {
+			assertFalse(Long.toString(millis), Deadline.after(millis).isExpired());
+		}
+		assertTrue(_wordSearch.make(new String[]{"pear", "kiwi"}, 4, 4, 4, Deadline.after(Long.MAX_VALUE)).isComplete());
+		assertTrue(Deadline.after(0).isExpired());
+		try {
+			Deadline.after(-1);
+			fail("a negative budget should be rejected");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
 
 
 